@@ -0,0 +1,115 @@
+package simulator.control;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import simulator.model.AnimalInfo;
+import simulator.model.EcoSysObserver;
+import simulator.model.MapInfo;
+import simulator.model.RegionInfo;
+
+// observer that saves a checkpoint of the simulation every that many steps. The state is copied to memory on the
+// simulation thread, between two steps, and a thread of its own writes it: to a temporary file first, that then
+// replaces the checkpoint, so the file is always a whole checkpoint even if the run dies while writing.
+// A checkpoint waits for the one before it, only one is in memory while the simulation goes on
+public class CheckpointRecorder implements EcoSysObserver {
+    private final Controller _ctrl;
+    private final Path _file;
+    private final int _every;
+    private int _steps = 0;
+    private final ExecutorService _writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "checkpoint-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private Future<?> _pending = null;      // the last checkpoint sent to the writer
+
+    public CheckpointRecorder(Controller ctrl, Path file, int every) {
+        if (every <= 0)
+            throw new IllegalArgumentException("Invalid number of steps between checkpoints");
+        _ctrl = ctrl;
+        _file = file;
+        _every = every;
+    }
+
+    public void close() {       // after removing the observer, waits until the last checkpoint is written
+        try {
+            wait_pending();
+        } finally {
+            _writer.shutdown();
+        }
+    }
+
+    private void save() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            _ctrl.save_checkpoint(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        wait_pending();
+        _pending = _writer.submit(() -> {
+            write(buffer);
+            return null;
+        });
+    }
+
+    private void write(ByteArrayOutputStream buffer) throws IOException {
+        Path tmp = _file.resolveSibling(_file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            buffer.writeTo(out);
+        }
+        try {
+            Files.move(tmp, _file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, _file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void wait_pending() {
+        if (_pending == null) return;
+        try {
+            _pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the checkpoint writer", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The checkpoint could not be written", e.getCause());
+        } finally {
+            _pending = null;
+        }
+    }
+
+    @Override
+    public void onRegister(double time, MapInfo map, List<AnimalInfo> animals) {
+    }
+
+    @Override
+    public void onReset(double time, MapInfo map, List<AnimalInfo> animals) {
+    }
+
+    @Override
+    public void onAnimalAdded(double time, MapInfo map, List<AnimalInfo> animals, AnimalInfo a) {
+    }
+
+    @Override
+    public void onRegionSet(int row, int col, MapInfo map, RegionInfo r) {
+    }
+
+    @Override
+    public void onAvanced(double time, MapInfo map, List<AnimalInfo> animals, double dt) {
+        if (++_steps % _every == 0)
+            save();
+    }
+}
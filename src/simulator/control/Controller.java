@@ -9,6 +9,7 @@ import java.util.List;
 
 import simulator.model.AnimalInfo;
 import simulator.model.EcoSysObserver;
+import simulator.model.Engine;
 import simulator.model.MapInfo;
 import simulator.model.Simulator;
 import simulator.view.SimpleObjectViewer;
@@ -22,8 +23,15 @@ public class Controller {
     }
 
     public void load_data(JSONObject data) {
-        // Sets the regions to DefaultRegion
-        _sim.default_matrix();
+        // Sets the regions to DefaultRegion, or to the default region specification (optional field)
+        if (data.has("default_region"))
+            _sim.default_matrix(data.getJSONObject("default_region"));
+        else
+            _sim.default_matrix();
+
+        // Neighbour index (optional field), either a type tag or a full specification
+        if (data.has("spatial_index"))
+            set_spatial_index(data.get("spatial_index"));
 
         // Load regions (optional field) from the JSON file
         set_regions(data);
@@ -34,21 +42,49 @@ public class Controller {
         if (animals != null && !animals.isEmpty()) {
             for (int i = 0; i < animals.length(); i++) {
                 // add animals to the simulator
-                JSONObject animal = animals.getJSONObject(i);
-                int amount = animal.getInt("amount");            // amount of each specific animal
-                JSONObject spec = animal.getJSONObject("spec");    // JSON with the animal specification
-
-                for (int j = 0; j < amount; j++) {
-                    _sim.add_animal(spec);
-                }
+                add_animals(animals.getJSONObject(i));
             }
         } else
             throw new IllegalArgumentException("No animals found in the JSON file");
 
     }
 
+    public void load_data(ScenarioReader data) {
+        // Same as load_data(JSONObject) with a scenario that is read as it is loaded, in the same order
+        if (data.has("default_region"))
+            _sim.default_matrix(data.get_object("default_region"));
+        else
+            _sim.default_matrix();
+
+        if (data.has("spatial_index"))
+            set_spatial_index(data.get("spatial_index"));
+
+        if (data.has("regions"))
+            data.for_each("regions", this::set_region);
+
+        if (data.for_each("animals", this::add_animals) == 0)
+            throw new IllegalArgumentException("No animals found in the JSON file");
+    }
+
+    private void add_animals(JSONObject animal) {
+        int amount = animal.getInt("amount");            // amount of each specific animal
+        JSONObject spec = animal.getJSONObject("spec");    // JSON with the animal specification
+        add_animals(spec, amount);
+    }
+
+    public void add_animals(JSONObject spec, int amount) {     // the observers are notified once for all of them
+        _sim.add_animals(spec, amount);
+    }
+
     public void run(double t, double dt, boolean sv, OutputStream out) {
-        PrintStream ps = new PrintStream(out);
+        run(t, dt, sv, out, null);
+    }
+
+    public void run(double t, double dt, boolean sv, OutputStream out, SnapshotRecorder recorder) {
+        // recorder (optional): gets the initial state and the states after the steps, it is closed at the end
+        // the states are written while they are serialized, through a buffer, never as a whole JSONObject
+        Writer w = new BufferedWriter(new OutputStreamWriter(out));
+        JSONWriter jw = new JSONWriter(w);
 
         SimpleObjectViewer view = null;
         if (sv) {
@@ -59,21 +95,38 @@ public class Controller {
             view.update(to_animals_info(_sim.get_animals()), _sim.get_time(), dt);
         }
 
-        JSONObject jo = new JSONObject();
-        jo.put("in", _sim.as_JSON());        // save the initial state of the simulator
+        jw.object();
+        jw.key("in");
+        _sim.write_JSON(jw);        // save the initial state of the simulator
 
-        while (_sim.get_time() <= t) {        // main loop
-            _sim.advance(dt);
+        if (recorder != null)
+            _sim.addObserver(recorder);
+
+        try {
+            while (_sim.get_time() <= t) {        // main loop
+                _sim.advance(dt);
+                if (sv)
+                    view.update(to_animals_info(_sim.get_animals()), _sim.get_time(), dt);
+            }
+        } finally {     // also when a step or the viewer fails, so the recorder does not outlive the run
             if (sv)
-                view.update(to_animals_info(_sim.get_animals()), _sim.get_time(), dt);
+                view.close();
+            if (recorder != null) {
+                _sim.removeObserver(recorder);
+                recorder.close();
+            }
         }
 
-        if (sv)
-            view.close();
-
-        jo.put("out", _sim.as_JSON());        // save the final state of the simulator
+        jw.key("out");
+        _sim.write_JSON(jw);        // save the final state of the simulator
+        jw.endObject();
 
-        ps.println(jo);
+        try {
+            w.write(System.lineSeparator());
+            w.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     private List<ObjInfo> to_animals_info(List<? extends AnimalInfo> animals) {
@@ -87,6 +140,18 @@ public class Controller {
         return ol;
     }
 
+    public void save_checkpoint(OutputStream out) throws IOException {     // between two steps, see Simulator
+        _sim.save_checkpoint(out);
+    }
+
+    public void load_checkpoint(InputStream in) throws IOException {
+        _sim.load_checkpoint(in);
+    }
+
+    public MapInfo get_map_info() {
+        return _sim.get_map_info();
+    }
+
     public void reset(int cols, int rows, int width, int height) {
         _sim.reset(cols, rows, width, height);
     }
@@ -97,26 +162,37 @@ public class Controller {
 
         if (reg != null && !reg.isEmpty()) {
             for (int j = 0; j < reg.length(); j++) {
-                JSONObject region = reg.getJSONObject(j);
-
-                JSONArray row = region.getJSONArray("row");
-                JSONArray col = region.getJSONArray("col");
-                JSONObject spec = region.getJSONObject("spec");    // JSON with the region specification
-
-                int rowFrom = row.getInt(0);
-                int rowTo = row.getInt(1);
-                int colFrom = col.getInt(0);
-                int colTo = col.getInt(1);
-
-                for (int r = rowFrom; r <= rowTo; r++) {
-                    for (int c = colFrom; c <= colTo; c++) {
-                        _sim.set_region(r, c, spec);
-                    }
-                }
+                set_region(reg.getJSONObject(j));
             }
         }
     }
 
+    private void set_region(JSONObject region) {
+        JSONArray row = region.getJSONArray("row");
+        JSONArray col = region.getJSONArray("col");
+        JSONObject spec = region.getJSONObject("spec");    // JSON with the region specification
+
+        _sim.set_regions(row.getInt(0), row.getInt(1), col.getInt(0), col.getInt(1), spec);
+    }
+
+    public void set_spatial_index(Object spec) {
+        // accepts "quadtree" as a short form of { "type" : "quadtree" }
+        JSONObject jo = spec instanceof JSONObject ? (JSONObject) spec : new JSONObject().put("type", spec.toString());
+        _sim.set_spatial_index(jo);
+    }
+
+    public void set_engine(Engine engine) {
+        _sim.set_engine(engine);
+    }
+
+    public void set_threads(int threads) {
+        _sim.set_threads(threads);
+    }
+
+    public void close() {
+        _sim.close();
+    }
+
     public void advance(double dt) {
         _sim.advance(dt);
     }
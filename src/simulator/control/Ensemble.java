@@ -0,0 +1,146 @@
+package simulator.control;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import simulator.factories.Factory;
+import simulator.misc.RandomStream;
+import simulator.misc.Utils;
+import simulator.model.Animal;
+import simulator.model.AnimalInfo;
+import simulator.model.NeighborIndex;
+import simulator.model.Region;
+import simulator.model.Simulator;
+import simulator.model.State;
+
+// several independent runs of the same scenario, one per seed. The factories and the scenario are only read,
+// so they are shared by all the runs. A run uses a single thread of the pool from the load to the end
+public class Ensemble {
+    private final JSONObject _scenario;
+    private final Factory<Animal> _animals_factory;
+    private final Factory<Region> _region_factory;
+    private final Factory<NeighborIndex> _index_factory;
+    private Consumer<Controller> _setup = c -> { };       // applied to every run after the load (engine, index...)
+
+    public Ensemble(JSONObject scenario, Factory<Animal> animals_factory, Factory<Region> regions_factory,
+                    Factory<NeighborIndex> index_factory) {
+        _scenario = scenario;
+        _animals_factory = animals_factory;
+        _region_factory = regions_factory;
+        _index_factory = index_factory;
+    }
+
+    public void set_setup(Consumer<Controller> setup) {
+        _setup = setup;
+    }
+
+    public JSONObject run(long[] seeds, int threads, double t, double dt, LongFunction<OutputStream> out)
+            throws InterruptedException, ExecutionException {
+        // out gives the stream of the run of each seed, it is closed when the run ends
+        if (seeds.length == 0 || threads <= 0)
+            throw new IllegalArgumentException("Invalid number of runs or threads");
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, seeds.length));
+        JSONArray runs = new JSONArray();
+        try {
+            List<Future<JSONObject>> results = new ArrayList<>(seeds.length);
+            for (long seed : seeds)
+                results.add(pool.submit(() -> {
+                    try (OutputStream os = out.apply(seed)) {
+                        JSONObject r = new JSONObject();
+                        r.put("seed", seed);
+                        r.put("animals", count_alive(run_one(_scenario, seed, t, dt, os).get_animals()));
+                        return r;
+                    }
+                }));
+            for (Future<JSONObject> f : results)       // in the order of the seeds, whatever the order they end in
+                runs.put(f.get());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        JSONObject summary = new JSONObject();
+        summary.put("replicates", seeds.length);
+        summary.put("time", t);
+        summary.put("runs", runs);
+        summary.put("species", aggregate(runs));
+        return summary;
+    }
+
+    Simulator run_one(JSONObject scenario, long seed, double t, double dt, OutputStream os) {
+        // a whole run on the calling thread, os gets the usual in/out JSON (nothing is written if it is null).
+        // Everything drawn while loading comes from the root of this thread, as a single batch run with this seed
+        Utils.set_thread_rand(new RandomStream(seed));
+        Controller ctrl = null;
+        try {
+            Simulator sim = new Simulator(scenario.getInt("cols"), scenario.getInt("rows"),
+                    scenario.getInt("width"), scenario.getInt("height"),
+                    _animals_factory, _region_factory, _index_factory);
+            ctrl = new Controller(sim);
+            ctrl.load_data(scenario);
+            _setup.accept(ctrl);
+            if (os != null) {
+                ctrl.run(t, dt, false, os);
+            } else {
+                while (sim.get_time() <= t)     // same steps as run
+                    ctrl.advance(dt);
+            }
+            return sim;
+        } finally {
+            if (ctrl != null) ctrl.close();     // the workers of a parallel run, one pool per run
+            Utils.set_thread_rand(null);
+        }
+    }
+
+    private static JSONObject count_alive(List<? extends AnimalInfo> animals) {
+        Map<String, Integer> count = new TreeMap<>();
+        for (AnimalInfo a : animals)
+            if (a.get_state() != State.DEAD)
+                count.merge(a.get_genetic_code(), 1, Integer::sum);
+        return new JSONObject(count);
+    }
+
+    private static JSONObject aggregate(JSONArray runs) {
+        // final population of every species over the runs, a species missing in a run counts as 0 there
+        Map<String, double[]> values = new TreeMap<>();
+        for (int i = 0; i < runs.length(); i++) {
+            JSONObject animals = runs.getJSONObject(i).getJSONObject("animals");
+            for (String code : animals.keySet())
+                values.computeIfAbsent(code, k -> new double[runs.length()])[i] = animals.getInt(code);
+        }
+
+        JSONObject species = new JSONObject();
+        for (Map.Entry<String, double[]> e : values.entrySet()) {
+            double[] v = e.getValue();
+            double sum = 0.0, min = v[0], max = v[0];
+            for (double x : v) {
+                sum += x;
+                min = Math.min(min, x);
+                max = Math.max(max, x);
+            }
+            double mean = sum / v.length;
+            double sq = 0.0;
+            for (double x : v) sq += (x - mean) * (x - mean);
+
+            JSONObject s = new JSONObject();
+            s.put("mean", mean);
+            s.put("std", v.length > 1 ? Math.sqrt(sq / (v.length - 1)) : 0.0);
+            s.put("min", min);
+            s.put("max", max);
+            species.put(e.getKey(), s);
+        }
+        return species;
+    }
+}
@@ -0,0 +1,37 @@
+package simulator.control;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.json.JSONWriter;
+
+// one JSON line per state: {"time":0.3,"animals":[["Sheep","NORMAL",x,y,energy,age],...]}
+public class NdjsonWriter extends SnapshotWriter {
+    private final Writer _out;
+
+    public NdjsonWriter(OutputStream out, int capacity) {
+        super(capacity);
+        _out = new BufferedWriter(new OutputStreamWriter(out));
+    }
+
+    @Override
+    protected void write(Snapshot s) throws IOException {
+        JSONWriter w = new JSONWriter(_out);
+        w.object().key("time").value(s._time).key("animals").array();
+        for (int i = 0; i < s.size(); i++) {
+            w.array().value(s._gcode[i]).value(s._state[i].toString());
+            for (int k = 4 * i; k < 4 * i + 4; k++) w.value(s._values[k]);
+            w.endArray();
+        }
+        w.endArray().endObject();
+        _out.write('\n');
+    }
+
+    @Override
+    protected void finish() throws IOException {
+        _out.flush();
+    }
+}
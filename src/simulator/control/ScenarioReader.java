@@ -0,0 +1,196 @@
+package simulator.control;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+// scenario file read without building its whole JSON tree. The file is mapped and its top level object is scanned
+// once, keeping where the value of each key starts and ends. A value is parsed when it is asked for, and the
+// arrays (animals, regions) are given one element at a time, so only one specification is in memory at a time.
+// The order of the keys in the file does not matter, Controller.load_data reads them in its own order
+public class ScenarioReader implements AutoCloseable {
+    private static final int CHUNK_BITS = 30;      // mapped in chunks of 1 GB, a single map is limited to 2 GB
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    private final FileChannel _channel;
+    private final MappedByteBuffer[] _chunks;
+    private final long _size;
+    private final Map<String, long[]> _values = new HashMap<>();       // start and end of the value of each key
+    private long _pos = 0;
+
+    public ScenarioReader(Path file) throws IOException {
+        _channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            _size = _channel.size();
+            _chunks = new MappedByteBuffer[(int) ((_size + CHUNK_MASK) >>> CHUNK_BITS)];
+            for (int i = 0; i < _chunks.length; i++) {
+                long from = (long) i << CHUNK_BITS;
+                _chunks[i] = _channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(_size - from, 1L << CHUNK_BITS));
+            }
+            scan();
+        } catch (IOException | RuntimeException e) {      // the caller gets no reader to close
+            _channel.close();
+            throw e;
+        }
+    }
+
+    private void scan() {
+        // the top level object, from where each value starts to where it ends
+        skip_whitespace();
+        expect('{');
+        skip_whitespace();
+        if (peek() == '}') return;
+        while (true) {
+            long from = _pos;
+            skip_string();
+            String key = (String) new JSONTokener(text(from, _pos)).nextValue();
+            skip_whitespace();
+            expect(':');
+            skip_whitespace();
+            from = _pos;
+            skip_value();
+            if (_values.put(key, new long[] { from, _pos }) != null)       // as JSONObject does
+                throw new JSONException("Duplicate key " + JSONObject.quote(key));
+            skip_whitespace();
+            if (next() == '}') break;
+            check(_pos - 1, ',');
+            skip_whitespace();
+        }
+    }
+
+    public boolean has(String key) {
+        return _values.containsKey(key);
+    }
+
+    public Object get(String key) {     // the value parsed as JSONObject.get would give it
+        long[] v = value(key);
+        return new JSONTokener(text(v[0], v[1])).nextValue();
+    }
+
+    public JSONObject get_object(String key) {
+        long[] v = value(key);
+        return new JSONObject(text(v[0], v[1]));
+    }
+
+    public int get_int(String key) {
+        Object o = get(key);
+        if (o instanceof Number n) return n.intValue();
+        throw new JSONException("JSONObject[" + JSONObject.quote(key) + "] is not an int.");
+    }
+
+    public int for_each(String key, Consumer<JSONObject> action) {
+        // the elements of an array, parsed and given one by one. Returns how many there were
+        long[] v = value(key);
+        _pos = v[0];
+        expect('[');
+        skip_whitespace();
+        if (peek() == ']') return 0;
+        int n = 0;
+        while (true) {
+            long from = _pos;
+            skip_value();
+            action.accept(new JSONObject(text(from, _pos)));
+            n++;
+            skip_whitespace();
+            if (next() == ']') break;
+            check(_pos - 1, ',');
+            skip_whitespace();
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+
+    private long[] value(String key) {
+        long[] v = _values.get(key);
+        if (v == null)
+            throw new JSONException("JSONObject[" + JSONObject.quote(key) + "] not found.");
+        return v;
+    }
+
+    private byte at(long i) {
+        if (i >= _size)
+            throw new JSONException("Unexpected end of the scenario file");
+        return _chunks[(int) (i >>> CHUNK_BITS)].get((int) (i & CHUNK_MASK));
+    }
+
+    private byte peek() {
+        return at(_pos);
+    }
+
+    private byte next() {
+        return at(_pos++);
+    }
+
+    private void expect(char c) {
+        check(_pos++, c);
+    }
+
+    private void check(long i, char c) {
+        if (at(i) != c)
+            throw new JSONException("Expected '" + c + "' at byte " + i + " of the scenario file");
+    }
+
+    private void skip_whitespace() {
+        while (_pos < _size && Character.isWhitespace(at(_pos))) _pos++;
+    }
+
+    private void skip_string() {        // from the opening quote to after the closing one
+        expect('"');
+        for (byte b = next(); b != '"'; b = next()) {
+            if (b == '\\') _pos++;
+        }
+    }
+
+    private void skip_value() {
+        // only the structure is followed, the value is checked when it is parsed. The UTF-8 bytes of the
+        // characters outside ASCII are never taken for quotes or brackets
+        byte b = peek();
+        if (b == '"') {
+            skip_string();
+        } else if (b == '{' || b == '[') {
+            int depth = 0;
+            do {
+                b = peek();
+                if (b == '"') {
+                    skip_string();
+                } else {
+                    if (b == '{' || b == '[') depth++;
+                    else if (b == '}' || b == ']') depth--;
+                    _pos++;
+                }
+            } while (depth > 0);
+        } else {        // number, true, false or null
+            while (_pos < _size && (b = peek()) != ',' && b != '}' && b != ']' && !Character.isWhitespace(b)) _pos++;
+        }
+    }
+
+    private String text(long from, long to) {
+        if (to - from > Integer.MAX_VALUE)
+            throw new JSONException("Value too large in the scenario file");
+        if (to > _size)
+            throw new JSONException("Unexpected end of the scenario file");
+        byte[] b = new byte[(int) (to - from)];
+        for (int n = 0; n < b.length; ) {       // the part of every chunk the value is in
+            MappedByteBuffer chunk = _chunks[(int) ((from + n) >>> CHUNK_BITS)];
+            int offset = (int) ((from + n) & CHUNK_MASK);
+            int len = Math.min(b.length - n, chunk.limit() - offset);
+            chunk.get(offset, b, n, len);
+            n += len;
+        }
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
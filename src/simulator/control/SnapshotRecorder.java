@@ -0,0 +1,50 @@
+package simulator.control;
+
+import java.util.List;
+
+import simulator.model.AnimalInfo;
+import simulator.model.EcoSysObserver;
+import simulator.model.MapInfo;
+import simulator.model.RegionInfo;
+
+// observer that sends the state when it is registered and then every that many steps to a SnapshotWriter.
+// Used by Controller.run and by the record button of the GUI
+public class SnapshotRecorder implements EcoSysObserver {
+    private final SnapshotWriter _writer;
+    private final int _every;
+    private int _steps = 0;
+
+    public SnapshotRecorder(SnapshotWriter writer, int every) {
+        if (every <= 0)
+            throw new IllegalArgumentException("Invalid number of steps between snapshots");
+        _writer = writer;
+        _every = every;
+    }
+
+    public void close() {       // after removing the observer, waits until every state is written
+        _writer.close();
+    }
+
+    @Override
+    public void onRegister(double time, MapInfo map, List<AnimalInfo> animals) {
+        _writer.submit(time, animals);
+    }
+
+    @Override
+    public void onReset(double time, MapInfo map, List<AnimalInfo> animals) {
+    }
+
+    @Override
+    public void onAnimalAdded(double time, MapInfo map, List<AnimalInfo> animals, AnimalInfo a) {
+    }
+
+    @Override
+    public void onRegionSet(int row, int col, MapInfo map, RegionInfo r) {
+    }
+
+    @Override
+    public void onAvanced(double time, MapInfo map, List<AnimalInfo> animals, double dt) {
+        if (++_steps % _every == 0)
+            _writer.submit(time, animals);
+    }
+}
@@ -0,0 +1,120 @@
+package simulator.control;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import simulator.model.AnimalInfo;
+import simulator.model.Diet;
+import simulator.model.State;
+
+// states of the simulation written while it runs, the format is given by the subclasses (NdjsonWriter,
+// TrajectoryWriter). The simulation thread only copies the values, a thread of its own formats and writes them.
+// The queue between them is bounded: if the disk cannot keep up the simulation waits, instead of keeping all the
+// states in memory
+public abstract class SnapshotWriter implements AutoCloseable {
+    private static final Snapshot END = new Snapshot(0.0, 0);
+
+    private final BlockingQueue<Snapshot> _queue;
+    private Thread _thread = null;      // started with the first state
+    private volatile Exception _error = null;
+
+    protected static class Snapshot {
+        final double _time;
+        final int[] _id;
+        final String[] _gcode;
+        final Diet[] _diet;
+        final State[] _state;
+        final double[] _values;     // x, y, energy and age of every animal
+
+        Snapshot(double time, int n) {
+            _time = time;
+            _id = new int[n];
+            _gcode = new String[n];
+            _diet = new Diet[n];
+            _state = new State[n];
+            _values = new double[4 * n];
+        }
+
+        int size() {
+            return _id.length;
+        }
+    }
+
+    protected SnapshotWriter(int capacity) {
+        _queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    // the format, both called from the writer thread
+    protected abstract void write(Snapshot s) throws IOException;
+
+    protected abstract void finish() throws IOException;        // after the last state
+
+    public void submit(double time, List<? extends AnimalInfo> animals) {
+        check_error();
+        Snapshot s = new Snapshot(time, animals.size());
+        for (int i = 0; i < animals.size(); i++) {
+            AnimalInfo a = animals.get(i);
+            s._id[i] = a.get_id();
+            s._gcode[i] = a.get_genetic_code();
+            s._diet[i] = a.get_diet();
+            s._state[i] = a.get_state();
+            s._values[4 * i] = a.get_position().getX();
+            s._values[4 * i + 1] = a.get_position().getY();
+            s._values[4 * i + 2] = a.get_energy();
+            s._values[4 * i + 3] = a.get_age();
+        }
+        put(s);
+    }
+
+    @Override
+    public void close() {       // waits until every state is written
+        put(END);
+        try {
+            _thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        check_error();
+    }
+
+    private void put(Snapshot s) {
+        if (_thread == null) {
+            _thread = new Thread(this::write_all, "snapshot-writer");
+            _thread.setDaemon(true);
+            _thread.start();
+        }
+        try {
+            _queue.put(s);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the snapshot writer", e);
+        }
+    }
+
+    private void check_error() {
+        if (_error != null)
+            throw new IllegalStateException("The snapshots could not be written", _error);
+    }
+
+    private void write_all() {
+        // after an error the states are still taken from the queue, so the simulation never waits forever
+        try {
+            for (Snapshot s = _queue.take(); s != END; s = _queue.take()) {
+                if (_error == null) {
+                    try {
+                        write(s);
+                    } catch (IOException | RuntimeException e) {      // JSONWriter wraps the IOExceptions
+                        _error = e;
+                    }
+                }
+            }
+            if (_error == null) finish();
+        } catch (IOException | RuntimeException e) {
+            if (_error == null) _error = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
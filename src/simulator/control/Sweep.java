@@ -0,0 +1,181 @@
+package simulator.control;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import simulator.misc.RandomStream;
+import simulator.model.AnimalInfo;
+import simulator.model.Diet;
+import simulator.model.Simulator;
+import simulator.model.State;
+
+// a parameter sweep: every point of a design changes some data fields of the builders in the scenario and is run
+// once per seed. The design is a grid of values or a latin hypercube of ranges:
+// { "design" : "grid", "params" : { "sheep.max_age" : [ 6.0, 8.0, 10.0 ], "default.food_rate" : [ 40.0, 60.0 ] } }
+// { "design" : "lhs", "samples" : 20, "seed" : 1, "params" : { "wolf.hunger_energy" : [ 30.0, 70.0 ] } }
+// A parameter is "type.key": key is set in the data of every animal or region of that type. The "default" regions
+// are also the ones that the scenario does not list, those come from its "default_region" specification
+public class Sweep {
+    private final JSONObject _scenario;
+    private final Ensemble _runner;
+    private final List<String> _params = new ArrayList<>();
+    private final List<double[]> _points = new ArrayList<>();
+
+    public Sweep(JSONObject scenario, JSONObject spec, Ensemble runner) {
+        _scenario = scenario;
+        _runner = runner;
+
+        Map<String, JSONArray> params = new TreeMap<>();      // sorted, the columns do not depend on the JSON
+        JSONObject p = spec.getJSONObject("params");
+        for (String name : p.keySet())
+            params.put(name, p.getJSONArray(name));
+        if (params.isEmpty())
+            throw new IllegalArgumentException("The sweep has no parameters");
+        _params.addAll(params.keySet());
+
+        String design = spec.optString("design", "grid");
+        if (design.equals("grid")) {
+            expand_grid(new ArrayList<>(params.values()));
+        } else if (design.equals("lhs")) {
+            expand_lhs(new ArrayList<>(params.values()), spec.getInt("samples"), new RandomStream(spec.optLong("seed", 0)));
+        } else {
+            throw new IllegalArgumentException("Invalid sweep design: " + design);
+        }
+
+        variant(_points.get(0));      // fail early on a parameter that the scenario does not have
+    }
+
+    private void expand_grid(List<JSONArray> values) {
+        // every combination, the last parameter changes first
+        int n = 1;
+        for (JSONArray v : values) {
+            if (v.isEmpty())
+                throw new IllegalArgumentException("A grid parameter has no values");
+            n *= v.length();
+        }
+        for (int i = 0; i < n; i++) {
+            double[] point = new double[values.size()];
+            int rest = i;
+            for (int j = values.size() - 1; j >= 0; j--) {
+                point[j] = values.get(j).getDouble(rest % values.get(j).length());
+                rest /= values.get(j).length();
+            }
+            _points.add(point);
+        }
+    }
+
+    private void expand_lhs(List<JSONArray> ranges, int samples, RandomStream rand) {
+        // each range is cut in samples strata, every stratum of every parameter is used by exactly one point
+        if (samples <= 0)
+            throw new IllegalArgumentException("Invalid number of samples");
+        for (int i = 0; i < samples; i++)
+            _points.add(new double[ranges.size()]);
+        for (int j = 0; j < ranges.size(); j++) {
+            double min = ranges.get(j).getDouble(0);
+            double max = ranges.get(j).getDouble(1);
+            int[] strata = new int[samples];
+            for (int i = 0; i < samples; i++) strata[i] = i;
+            for (int i = samples - 1; i > 0; i--) {     // random permutation of the strata
+                int k = rand.nextInt(i + 1);
+                int tmp = strata[i];
+                strata[i] = strata[k];
+                strata[k] = tmp;
+            }
+            for (int i = 0; i < samples; i++)
+                _points.get(i)[j] = min + (strata[i] + rand.nextDouble()) / samples * (max - min);
+        }
+    }
+
+    private JSONObject variant(double[] point) {
+        JSONObject jo = new JSONObject(_scenario.toString());       // deep copy, the scenario is shared by all the runs
+        if (!jo.has("regions")) jo.put("regions", new JSONArray());
+        if (!jo.has("default_region")) jo.put("default_region", new JSONObject().put("type", "default"));
+
+        for (int j = 0; j < _params.size(); j++) {
+            String name = _params.get(j);
+            int dot = name.indexOf('.');
+            if (dot <= 0 || dot == name.length() - 1)
+                throw new IllegalArgumentException("Invalid sweep parameter, expected type.key: " + name);
+            String type = name.substring(0, dot);
+            String key = name.substring(dot + 1);
+
+            int found = set_in_specs(jo.getJSONArray("animals"), type, key, point[j])
+                    + set_in_specs(jo.getJSONArray("regions"), type, key, point[j])
+                    + set_in_spec(jo.getJSONObject("default_region"), type, key, point[j]);
+            if (found == 0)
+                throw new IllegalArgumentException("No animal or region of type '" + type + "' for the sweep parameter " + name);
+        }
+        return jo;
+    }
+
+    private static int set_in_specs(JSONArray entries, String type, String key, double value) {
+        int found = 0;
+        for (int i = 0; i < entries.length(); i++)
+            found += set_in_spec(entries.getJSONObject(i).getJSONObject("spec"), type, key, value);
+        return found;
+    }
+
+    private static int set_in_spec(JSONObject spec, String type, String key, double value) {
+        if (!spec.getString("type").equals(type))
+            return 0;
+        if (!spec.has("data")) spec.put("data", new JSONObject());
+        spec.getJSONObject("data").put(key, value);
+        return 1;
+    }
+
+    public void run(long[] seeds, int threads, double t, double dt, PrintStream out)
+            throws InterruptedException, ExecutionException {
+        // one task per point and seed on a work-stealing pool, each one prints its row as soon as it ends
+        if (seeds.length == 0 || threads <= 0)
+            throw new IllegalArgumentException("Invalid number of seeds or threads");
+
+        StringBuilder header = new StringBuilder("run,seed");
+        for (String name : _params) header.append(',').append(name);
+        for (Diet d : Diet.values()) header.append(',').append(d.toString().toLowerCase());
+        out.println(header);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(_points.size() * seeds.length);
+            for (int i = 0; i < _points.size(); i++) {
+                int run = i;
+                for (long seed : seeds)
+                    tasks.add(pool.submit(() -> {
+                        Simulator sim = _runner.run_one(variant(_points.get(run)), seed, t, dt, null);
+                        String row = row(run, seed, _points.get(run), sim.get_animals());
+                        synchronized (out) {
+                            out.println(row);
+                            out.flush();
+                        }
+                    }));
+            }
+            for (ForkJoinTask<?> task : tasks)
+                task.get();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String row(int run, long seed, double[] point, List<? extends AnimalInfo> animals) {
+        // the animals alive at the end of the run, by diet
+        int[] alive = new int[Diet.values().length];
+        for (AnimalInfo a : animals)
+            if (a.get_state() != State.DEAD)
+                alive[a.get_diet().ordinal()]++;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(run).append(',').append(seed);
+        for (double v : point) sb.append(',').append(v);
+        for (int n : alive) sb.append(',').append(n);
+        return sb.toString();
+    }
+}
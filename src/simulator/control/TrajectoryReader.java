@@ -0,0 +1,271 @@
+package simulator.control;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import simulator.misc.Vector2D;
+import simulator.model.AnimalInfo;
+import simulator.model.Diet;
+import simulator.model.MapInfo;
+import simulator.model.State;
+
+// reads a trajectory of TrajectoryWriter. The file is mapped once when it is opened, then any state is found
+// through its offset and sliced from the mapping, so the cost of reading a state does not depend on where it is
+public class TrajectoryReader implements AutoCloseable {
+    private static final int CHUNK_BITS = 30;
+    // a mapping starts every 1 GB and is as long as a single map can be (2 GB), so every state that is not
+    // longer than 1 GB is whole in the mapping of the chunk it starts in
+    private static final long WINDOW_SIZE = Integer.MAX_VALUE;
+
+    private final FileChannel _channel;
+    private final MappedByteBuffer[] _windows;
+    private final int _width, _height, _cols, _rows;
+    private final List<String> _species = new ArrayList<>();
+    private final LongBuffer _offsets;      // inside the mapped footer
+    private final long _footer;
+
+    public TrajectoryReader(Path file) throws IOException {
+        _channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = _channel.size();
+            if (size < TrajectoryWriter.HEADER_SIZE + TrajectoryWriter.TRAILER_SIZE)
+                throw new IOException("Not a trajectory file: " + file);
+
+            ByteBuffer header = map(0, TrajectoryWriter.HEADER_SIZE);
+            ByteBuffer trailer = map(size - TrajectoryWriter.TRAILER_SIZE, TrajectoryWriter.TRAILER_SIZE);
+            if (header.getInt() != TrajectoryWriter.MAGIC || trailer.getInt(Long.BYTES) != TrajectoryWriter.MAGIC)
+                throw new IOException("Not a trajectory file, or not a complete one: " + file);
+            if (header.getInt() != TrajectoryWriter.VERSION)
+                throw new IOException("Unsupported version of the trajectory file: " + file);
+            _width = header.getInt();
+            _height = header.getInt();
+            _cols = header.getInt();
+            _rows = header.getInt();
+
+            _footer = trailer.getLong(0);
+            ByteBuffer footer = map(_footer, size - TrajectoryWriter.TRAILER_SIZE - _footer);
+            int species = footer.getInt();
+            for (int i = 0; i < species; i++) {
+                byte[] name = new byte[footer.getShort()];
+                footer.get(name);
+                _species.add(new String(name, StandardCharsets.UTF_8));
+            }
+            int ticks = footer.getInt();
+            _offsets = footer.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            _offsets.limit(ticks);
+
+            _windows = new MappedByteBuffer[(int) ((_footer + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS)];
+            for (int i = 0; i < _windows.length; i++) {
+                long from = (long) i << CHUNK_BITS;
+                _windows[i] = map(from, Math.min(_footer - from, WINDOW_SIZE));
+            }
+        } catch (IOException | RuntimeException e) {      // the caller gets no reader to close
+            _channel.close();
+            throw e;
+        }
+    }
+
+    private MappedByteBuffer map(long position, long size) throws IOException {
+        MappedByteBuffer b = _channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        return b;
+    }
+
+    public int get_num_ticks() {
+        return _offsets.limit();
+    }
+
+    public Tick get_tick(int i) throws IOException {
+        if (i < 0 || i >= get_num_ticks())
+            throw new IndexOutOfBoundsException("Invalid tick: " + i);
+        long from = _offsets.get(i);
+        long to = i + 1 < get_num_ticks() ? _offsets.get(i + 1) : _footer;
+        long offset = from & ((1L << CHUNK_BITS) - 1);
+        if (offset + (to - from) > WINDOW_SIZE)     // a state longer than 1 GB, mapped on its own
+            return new Tick(map(from, to - from));
+        ByteBuffer b = _windows[(int) (from >>> CHUNK_BITS)].slice((int) offset, (int) (to - from));
+        return new Tick(b.order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    public MapInfo get_map_info() {     // the size of the map, the regions are not kept
+        return new MapInfo() {
+            @Override
+            public int get_cols() {
+                return _cols;
+            }
+
+            @Override
+            public int get_rows() {
+                return _rows;
+            }
+
+            @Override
+            public int get_width() {
+                return _width;
+            }
+
+            @Override
+            public int get_height() {
+                return _height;
+            }
+
+            @Override
+            public int get_region_width() {
+                return _width / _cols + (_width % _cols != 0 ? 1 : 0);
+            }
+
+            @Override
+            public int get_region_height() {
+                return _height / _rows + (_height % _rows != 0 ? 1 : 0);
+            }
+
+            @Override
+            public Iterator<RegionData> iterator() {
+                return Collections.emptyIterator();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+
+    // one state, read from the mapped block without copying it
+    public class Tick {
+        private final ByteBuffer _b;
+        private final int _n;
+        private final int _id_col, _species_col, _diet_col, _state_col, _float_col;     // start of each column
+
+        private Tick(ByteBuffer b) {
+            _b = b;
+            _n = b.getInt(Double.BYTES);
+            _id_col = Double.BYTES + Integer.BYTES;
+            _species_col = _id_col + _n * Integer.BYTES;
+            _diet_col = _species_col + _n;
+            _state_col = _diet_col + _n;
+            _float_col = _state_col + _n;
+        }
+
+        public double get_time() {
+            return _b.getDouble(0);
+        }
+
+        public int size() {
+            return _n;
+        }
+
+        public int get_id(int i) {
+            return _b.getInt(_id_col + i * Integer.BYTES);
+        }
+
+        public String get_species(int i) {
+            return _species.get(_b.get(_species_col + i) & 0xff);
+        }
+
+        public Diet get_diet(int i) {
+            return Diet.values()[_b.get(_diet_col + i)];
+        }
+
+        public State get_state(int i) {
+            return State.values()[_b.get(_state_col + i)];
+        }
+
+        public float get_x(int i) {
+            return column(0, i);
+        }
+
+        public float get_y(int i) {
+            return column(1, i);
+        }
+
+        public float get_energy(int i) {
+            return column(2, i);
+        }
+
+        public float get_age(int i) {
+            return column(3, i);
+        }
+
+        private float column(int c, int i) {
+            return _b.getFloat(_float_col + (c * _n + i) * Float.BYTES);
+        }
+
+        public List<AnimalInfo> get_animals() {     // for the viewers, what the trajectory does not keep is 0 or null
+            List<AnimalInfo> l = new ArrayList<>(_n);
+            for (int i = 0; i < _n; i++)
+                l.add(new Record(get_id(i), get_species(i), get_diet(i), get_state(i),
+                        new Vector2D(get_x(i), get_y(i)), get_energy(i), get_age(i)));
+            return l;
+        }
+    }
+
+    private record Record(int id, String gcode, Diet diet, State state, Vector2D pos, double energy, double age)
+            implements AnimalInfo {
+        @Override
+        public int get_id() {
+            return id;
+        }
+
+        @Override
+        public State get_state() {
+            return state;
+        }
+
+        @Override
+        public Vector2D get_position() {
+            return pos;
+        }
+
+        @Override
+        public String get_genetic_code() {
+            return gcode;
+        }
+
+        @Override
+        public Diet get_diet() {
+            return diet;
+        }
+
+        @Override
+        public double get_speed() {
+            return 0.0;
+        }
+
+        @Override
+        public double get_sight_range() {
+            return 0.0;
+        }
+
+        @Override
+        public double get_energy() {
+            return energy;
+        }
+
+        @Override
+        public double get_age() {
+            return age;
+        }
+
+        @Override
+        public Vector2D get_destination() {
+            return null;
+        }
+
+        @Override
+        public boolean is_pregnant() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package simulator.control;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import simulator.model.MapInfo;
+
+// binary trajectory, little endian, read with TrajectoryReader:
+//   header: magic, version, width, height, cols, rows (6 ints)
+//   a block per state, by columns: time (double), n (int), id[n] (int), species[n], diet[n], state[n] (bytes),
+//     x[n], y[n], energy[n], age[n] (floats)
+//   footer: number of species, each one as its length (short) and UTF-8 bytes, number of states and the offset
+//     of each block (longs)
+//   trailer: offset of the footer (long), magic
+public class TrajectoryWriter extends SnapshotWriter {
+    static final int MAGIC = 0x45434f54;       // "ECOT"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 6 * Integer.BYTES;
+    static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final FileChannel _channel;
+    private ByteBuffer _buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    private final Map<String, Integer> _species = new HashMap<>();
+    private final List<String> _species_names = new ArrayList<>();
+    private long[] _offsets = new long[64];
+    private int _ticks = 0;
+    private long _position;
+
+    public TrajectoryWriter(Path file, MapInfo map, int capacity) throws IOException {
+        super(capacity);
+        _channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        _buffer.putInt(MAGIC).putInt(VERSION);
+        _buffer.putInt(map.get_width()).putInt(map.get_height()).putInt(map.get_cols()).putInt(map.get_rows());
+        _position = 0;
+        try {
+            flush();
+        } catch (IOException e) {
+            _channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void write(Snapshot s) throws IOException {
+        // after an error no other state nor the footer is written (see SnapshotWriter), the file is closed here
+        boolean written = false;
+        try {
+            int n = s.size();
+            ensure(Double.BYTES + Integer.BYTES + n * (Integer.BYTES + 3 + 4 * Float.BYTES));
+            if (_ticks == _offsets.length) _offsets = Arrays.copyOf(_offsets, 2 * _ticks);
+            _offsets[_ticks++] = _position;
+
+            _buffer.putDouble(s._time).putInt(n);
+            for (int i = 0; i < n; i++) _buffer.putInt(s._id[i]);
+            for (int i = 0; i < n; i++) _buffer.put(species(s._gcode[i]));
+            for (int i = 0; i < n; i++) _buffer.put((byte) s._diet[i].ordinal());
+            for (int i = 0; i < n; i++) _buffer.put((byte) s._state[i].ordinal());
+            for (int k = 0; k < 4; k++)
+                for (int i = 0; i < n; i++) _buffer.putFloat((float) s._values[4 * i + k]);
+            flush();
+            written = true;
+        } finally {
+            if (!written) _channel.close();
+        }
+    }
+
+    @Override
+    protected void finish() throws IOException {
+        long footer = _position;
+        int size = Integer.BYTES + Integer.BYTES + _ticks * Long.BYTES + TRAILER_SIZE;
+        List<byte[]> names = new ArrayList<>();
+        for (String name : _species_names) {
+            names.add(name.getBytes(StandardCharsets.UTF_8));
+            size += Short.BYTES + names.get(names.size() - 1).length;
+        }
+        try {
+            ensure(size);
+
+            _buffer.putInt(names.size());
+            for (byte[] b : names) _buffer.putShort((short) b.length).put(b);
+            _buffer.putInt(_ticks);
+            for (int i = 0; i < _ticks; i++) _buffer.putLong(_offsets[i]);
+            _buffer.putLong(footer).putInt(MAGIC);
+            flush();
+        } finally {
+            _channel.close();
+        }
+    }
+
+    private byte species(String gcode) {
+        Integer i = _species.get(gcode);
+        if (i == null) {
+            if (_species_names.size() == 256)
+                throw new IllegalStateException("Too many species for a trajectory");
+            i = _species_names.size();
+            _species.put(gcode, i);
+            _species_names.add(gcode);
+        }
+        return (byte) i.intValue();
+    }
+
+    private void ensure(int bytes) {        // room for a whole block, the buffer is empty between blocks
+        if (_buffer.capacity() < bytes)
+            _buffer = ByteBuffer.allocateDirect(Math.max(bytes, 2 * _buffer.capacity())).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void flush() throws IOException {
+        _buffer.flip();
+        while (_buffer.hasRemaining()) _position += _channel.write(_buffer);
+        _buffer.clear();
+    }
+}
@@ -1,7 +1,12 @@
 package simulator.factories;
 
+import java.util.function.Supplier;
+
 import org.json.JSONObject;
 
+import simulator.misc.Utils;
+import simulator.misc.Vector2D;
+
 public abstract class Builder<T> {
     private String _type_tag;
     private String _desc;
@@ -37,4 +42,27 @@ public abstract class Builder<T> {
     }
 
     protected abstract T create_instance(JSONObject data);
+
+    // many instances of the same data: the builders that can read it only once override this
+    protected Supplier<T> create_template(JSONObject data) {
+        return () -> create_instance(data);
+    }
+
+    protected static Supplier<Vector2D> get_position(JSONObject data) {
+        // random position inside the "pos" ranges of data, read once. Gives null if there are none
+        if (!data.has("pos"))
+            return () -> null;
+
+        JSONObject p = data.getJSONObject("pos");
+        double x1 = p.getJSONArray("x_range").getDouble(0);
+        double x2 = p.getJSONArray("x_range").getDouble(1);
+        double y1 = p.getJSONArray("y_range").getDouble(0);
+        double y2 = p.getJSONArray("y_range").getDouble(1);
+        return () -> new Vector2D(x1 + Utils.rand().nextDouble() * (x2 - x1), y1 + Utils.rand().nextDouble() * (y2 - y1));
+    }
+
+    protected static double get_double(JSONObject data, String key, double default_value) {
+        // optional number, the dialogs send the fields that were left blank as ""
+        return data.isNull(key) || data.get(key).equals("") ? default_value : data.getDouble(key);
+    }
 }
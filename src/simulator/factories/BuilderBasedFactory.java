@@ -1,6 +1,7 @@
 package simulator.factories;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 import org.json.JSONObject;
 
@@ -31,17 +32,33 @@ public class BuilderBasedFactory<T> implements Factory<T> {
             throw new IllegalArgumentException("'info' cannot be null");
         }
 
+        // each builder creates an instance of its own type
+        T obj = builder_of(info).create_instance(data_of(info));
+
+        return obj;
+    }
+
+    @Override
+    public Supplier<T> create_template(JSONObject info) throws IllegalArgumentException {
+        if (info == null) {
+            throw new IllegalArgumentException("'info' cannot be null");
+        }
+
+        return builder_of(info).create_template(data_of(info));
+    }
+
+    private Builder<T> builder_of(JSONObject info) {
         String tag = info.getString("type");
         Builder<T> b = _builders.get(tag);        // get the builder associated with the tag
 
         if (b == null) {
             throw new IllegalArgumentException("Invalid type: " + tag);
         }
+        return b;
+    }
 
-        // each builder creates an instance of its own type
-        T obj = b.create_instance(info.has("data") ? info.getJSONObject("data") : new JSONObject());
-
-        return obj;
+    private static JSONObject data_of(JSONObject info) {
+        return info.has("data") ? info.getJSONObject("data") : new JSONObject();
     }
 
     @Override
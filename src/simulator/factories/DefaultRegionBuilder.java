@@ -1,5 +1,7 @@
 package simulator.factories;
 
+import java.util.function.Supplier;
+
 import org.json.JSONObject;
 
 import simulator.model.DefaultRegion;
@@ -12,14 +14,35 @@ public class DefaultRegionBuilder extends Builder<Region> {
 
     @Override
     protected DefaultRegion create_instance(JSONObject data) {
+        return (DefaultRegion) create_template(data).get();
+    }
+
+    @Override
+    protected Supplier<Region> create_template(JSONObject data) {
         // Example JSON:
         // {
         // "type" : "default",
-        // "data" : { }
+        // "data" : { "food_rate" : 60.0, "crowd_size" : 5.0, "crowd_penalty" : 2.0 }     (all optional)
         // }
 
-        if (!data.isEmpty()) throw new IllegalArgumentException("The data field for default region is not empty");
+        for (String key : data.keySet())
+            if (!key.equals("food_rate") && !key.equals("crowd_size") && !key.equals("crowd_penalty"))
+                throw new IllegalArgumentException("Invalid data field for default region: " + key);
+
+        double food_rate = get_double(data, "food_rate", Region.FOOD_RATE);
+        double crowd_size = get_double(data, "crowd_size", Region.CROWD_SIZE);
+        double crowd_penalty = get_double(data, "crowd_penalty", Region.CROWD_PENALTY);
+        return () -> new DefaultRegion(food_rate, crowd_size, crowd_penalty);
+    }
+
+    @Override
+    protected void fill_in_data(JSONObject o) {
+        fill_in_food_data(o);
+    }
 
-        return new DefaultRegion();
+    static void fill_in_food_data(JSONObject o) {      // the food formula, shared by all the regions
+        o.put("food_rate", "Food per second of a herbivore (optional with default " + Region.FOOD_RATE + ")");
+        o.put("crowd_size", "Herbivores over which the food decreases (optional with default " + Region.CROWD_SIZE + ")");
+        o.put("crowd_penalty", "How fast the food decreases with each extra herbivore (optional with default " + Region.CROWD_PENALTY + ")");
     }
 }
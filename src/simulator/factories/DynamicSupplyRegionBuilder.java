@@ -1,8 +1,9 @@
 	package simulator.factories;
 
+import java.util.function.Supplier;
+
 import org.json.JSONObject;
 
-import simulator.misc.Utils;
 import simulator.model.DynamicSupplyRegion;
 import simulator.model.Region;
 
@@ -14,27 +15,31 @@ public class DynamicSupplyRegionBuilder extends Builder<Region> {
 
 	@Override
 	protected DynamicSupplyRegion create_instance(JSONObject data) {
+		return (DynamicSupplyRegion) create_template(data).get();
+	}
+
+	@Override
+	protected Supplier<Region> create_template(JSONObject data) {
 		// Example JSON
 		// {
 		// "type" : "dynamic",
 		// "data" : {
 		// "factor" : 2.5,
 		// "food" : 1250.0
+		// "food_rate" : 60.0, "crowd_size" : 5.0, "crowd_penalty" : 2.0     (optional, see DefaultRegionBuilder)
 		// }
-		double _factor = 2.0;
-		double _food = 1000.0;
-
-		if (!data.isNull("factor") && !data.get("factor").equals(""))
-			_factor = data.getDouble("factor");
-		if (!data.isNull("food") && !data.get("food").equals(""))
-			_food = data.getDouble("food");
-
-		return new DynamicSupplyRegion(_factor, _food);
+		double factor = get_double(data, "factor", 2.0);
+		double food = get_double(data, "food", 1000.0);
+		double food_rate = get_double(data, "food_rate", Region.FOOD_RATE);
+		double crowd_size = get_double(data, "crowd_size", Region.CROWD_SIZE);
+		double crowd_penalty = get_double(data, "crowd_penalty", Region.CROWD_PENALTY);
+		return () -> new DynamicSupplyRegion(factor, food, food_rate, crowd_size, crowd_penalty);
 	}
 
 	@Override
 	protected void fill_in_data(JSONObject o) {		// This method is used by the dialog to show the user the fields that can be filled in
 		o.put("factor", "Food increase factor (optional with default 2.0)");
 		o.put("food", "Initial amount of food (optional with default 1000.0)");
+		DefaultRegionBuilder.fill_in_food_data(o);
 	}
 }
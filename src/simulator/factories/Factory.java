@@ -1,11 +1,17 @@
 package simulator.factories;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 import org.json.JSONObject;
 
 public interface Factory<T> {
     public T create_instance(JSONObject info);
 
+    // the specification compiled once, every call of the supplier gives what create_instance would give
+    public default Supplier<T> create_template(JSONObject info) {
+        return () -> create_instance(info);
+    }
+
     public List<JSONObject> get_info();
 }
\ No newline at end of file
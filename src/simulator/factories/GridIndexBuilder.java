@@ -0,0 +1,28 @@
+package simulator.factories;
+
+import org.json.JSONObject;
+
+import simulator.model.GridIndex;
+import simulator.model.NeighborIndex;
+
+public class GridIndexBuilder extends Builder<NeighborIndex> {
+    public GridIndexBuilder() {
+        super("grid", "Uniform grid of buckets");
+    }
+
+    @Override
+    protected GridIndex create_instance(JSONObject data) {
+        // Example JSON:
+        // {
+        // "type" : "grid",
+        // "data" : { "cell_size" : 20.0 }
+        // }
+
+        return new GridIndex(data.optDouble("cell_size", 0.0));
+    }
+
+    @Override
+    protected void fill_in_data(JSONObject o) {
+        o.put("cell_size", "Side of the grid cells (optional, the region size by default)");
+    }
+}
@@ -0,0 +1,28 @@
+package simulator.factories;
+
+import org.json.JSONObject;
+
+import simulator.model.KdTreeIndex;
+import simulator.model.NeighborIndex;
+
+public class KdTreeIndexBuilder extends Builder<NeighborIndex> {
+    public KdTreeIndexBuilder() {
+        super("kdtree", "Periodically rebuilt k-d tree");
+    }
+
+    @Override
+    protected KdTreeIndex create_instance(JSONObject data) {
+        // Example JSON:
+        // {
+        // "type" : "kdtree",
+        // "data" : { "rebuild_ratio" : 0.5 }
+        // }
+
+        return new KdTreeIndex(data.optDouble("rebuild_ratio", 0.5));
+    }
+
+    @Override
+    protected void fill_in_data(JSONObject o) {
+        o.put("rebuild_ratio", "Fraction of moved or removed animals that triggers a rebuild at the end of a step (optional with default 0.5)");
+    }
+}
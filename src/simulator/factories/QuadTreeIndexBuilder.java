@@ -0,0 +1,28 @@
+package simulator.factories;
+
+import org.json.JSONObject;
+
+import simulator.model.NeighborIndex;
+import simulator.model.QuadTreeIndex;
+
+public class QuadTreeIndexBuilder extends Builder<NeighborIndex> {
+    public QuadTreeIndexBuilder() {
+        super("quadtree", "Adaptive quadtree");
+    }
+
+    @Override
+    protected QuadTreeIndex create_instance(JSONObject data) {
+        // Example JSON:
+        // {
+        // "type" : "quadtree",
+        // "data" : { "capacity" : 16 }
+        // }
+
+        return new QuadTreeIndex(data.optInt("capacity", 16));
+    }
+
+    @Override
+    protected void fill_in_data(JSONObject o) {
+        o.put("capacity", "Animals per leaf before it is split (optional with default 16)");
+    }
+}
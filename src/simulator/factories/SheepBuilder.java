@@ -1,8 +1,9 @@
 package simulator.factories;
 
+import java.util.function.Supplier;
+
 import org.json.JSONObject;
 
-import simulator.misc.Utils;
 import simulator.misc.Vector2D;
 import simulator.model.*;
 
@@ -26,33 +27,29 @@ public class SheepBuilder extends Builder<Animal> {
 		// "x_range" : [ 100.0, 200.0 ],
 		// "y_range" : [ 100.0, 200.0 ]
 		// }
+		// "max_age" : 8.0
+		// "interaction_distance" : 8.0
 		// }
 		// }
 
-		SelectionStrategy _mate_strategy;
-		SelectionStrategy _danger_strategy;
-		Vector2D _pos = null;
-
-		if (data.has("pos")) {
-			JSONObject p = data.getJSONObject("pos");
-			// get x range
-			double x1 = p.getJSONArray("x_range").getDouble(0);
-			double x2 = p.getJSONArray("x_range").getDouble(1);
-			// get y range
-			double y1 = p.getJSONArray("y_range").getDouble(0);
-			double y2 = p.getJSONArray("y_range").getDouble(1);
+		return (Sheep) create_template(data).get();
+	}
 
-			// get random pos inbetween x and y range
-			_pos = new Vector2D(x1 + Utils._rand.nextDouble() * (x2 - x1), y1 + Utils._rand.nextDouble() * (y2 - y1));
-		}
+	@Override
+	protected Supplier<Animal> create_template(JSONObject data) {
+		// the data is read once, each sheep only draws its position (the strategies have no state, they are shared)
+		Supplier<Vector2D> _pos = get_position(data);
 
-		_mate_strategy = data.isNull("mate_strategy") ? new SelectFirst()
+		SelectionStrategy _mate_strategy = data.isNull("mate_strategy") ? new SelectFirst()
 				: _strategy_factory.create_instance(data.getJSONObject("mate_strategy"));
 
-		_danger_strategy = data.isNull("danger_strategy") ? new SelectFirst()
+		SelectionStrategy _danger_strategy = data.isNull("danger_strategy") ? new SelectFirst()
 				: _strategy_factory.create_instance(data.getJSONObject("danger_strategy"));
 
-		return new Sheep(_mate_strategy, _danger_strategy, _pos);
+		double max_age = get_double(data, "max_age", Sheep.MAX_AGE);
+		double interaction_distance = get_double(data, "interaction_distance", Animal.INTERACTION_DISTANCE);
+
+		return () -> new Sheep(_mate_strategy, _danger_strategy, _pos.get(), max_age, interaction_distance);
 	}
 
 	@Override
@@ -60,5 +57,7 @@ public class SheepBuilder extends Builder<Animal> {
 		o.put("pos", "Range for both x axys and y axys in thwo different arrays (x_range/y_range), each with a lower and upper boundary");
 		o.put("mate_strategy", "Strategy to select a mate animal (first, youngest, closest)");
 		o.put("danger_strategy", "Strategy to select a danger source (first, youngest, closest)");
+		o.put("max_age", "Age at which the sheep dies (optional with default " + Sheep.MAX_AGE + ")");
+		o.put("interaction_distance", "Distance to mate or to reach a destination (optional with default " + Animal.INTERACTION_DISTANCE + ")");
 	}
 }
@@ -2,9 +2,13 @@ package simulator.launcher;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,11 +24,21 @@ import org.apache.commons.cli.ParseException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
+import simulator.control.CheckpointRecorder;
 import simulator.control.Controller;
+import simulator.control.NdjsonWriter;
+import simulator.control.ScenarioReader;
+import simulator.control.SnapshotRecorder;
+import simulator.control.SnapshotWriter;
+import simulator.control.TrajectoryReader;
+import simulator.control.TrajectoryWriter;
+import simulator.control.Ensemble;
+import simulator.control.Sweep;
 import simulator.factories.*;
 import simulator.misc.Utils;
 import simulator.model.*;
 import simulator.view.MainWindow;
+import simulator.view.ReplayWindow;
 
 public class Main {
     private enum ExecMode {
@@ -51,6 +65,7 @@ public class Main {
     //
     private final static Double _default_time = 10.0; // in seconds
     private final static Double _default_dt = 0.03; // in seconds
+    private final static long _default_seed = 2147483647l;
 
     // some attributes to stores values corresponding to command-line parameters
     //
@@ -59,6 +74,15 @@ public class Main {
     private static boolean _sv = false;
     private static String _in_file = null;
     private static String _out_file = null;
+    private static String _spatial_index = null;
+    private static Engine _engine = Engine.SEQUENTIAL;
+    private static Integer _threads = null;     // null means one per available processor
+    private static long[] _seeds = null;        // null means a single run with the default seed
+    private static String _sweep_file = null;
+    private static int _snapshot_every = 0;     // 0 means no snapshots
+    private static boolean _binary_snapshots = false;
+    private static final int SNAPSHOT_QUEUE = 8;       // states waiting to be written before the simulation waits
+    private static int _checkpoint_every = 0;   // 0 means no checkpoints
     private static Simulator _sim;
     private static Controller _controller;
     private static ExecMode _mode = ExecMode.GUI;
@@ -70,6 +94,7 @@ public class Main {
     public static Factory<SelectionStrategy> _selection_strategy_factory;
     public static Factory<Animal> _animals_factory;
     public static Factory<Region> _region_factory;
+    public static Factory<NeighborIndex> _index_factory;
 
     private static void parse_args(String[] args) {
 
@@ -89,6 +114,13 @@ public class Main {
             parse_dtime_option(line);
             parse_out_file_option(line);
             parse_sv_option(line);
+            parse_spatial_index_option(line);
+            parse_engine_option(line);
+            parse_threads_option(line);
+            parse_ensemble_options(line);
+            parse_sweep_option(line);
+            parse_snapshot_option(line);
+            parse_checkpoint_option(line);
 
             // if there are some remaining arguments, then something wrong is
             // provided in the command line!
@@ -132,6 +164,29 @@ public class Main {
         // simple viewer
         cmdLineOptions.addOption(Option.builder("sv").longOpt("simple-viewer").desc("Show the viewer window in console mode.").build());
 
+        // spatial index
+        cmdLineOptions.addOption(Option.builder("si").longOpt("spatial-index").hasArg().desc("Neighbour index used by the animals. Possible values: 'grid', 'quadtree', 'kdtree'. Overrides the 'spatial_index' key of the input file. Default value: 'grid'.").build());
+
+        // engine
+        cmdLineOptions.addOption(Option.builder("e").longOpt("engine").hasArg().desc("Simulation engine. Possible values: 'sequential' (the animals see the current positions of the others), 'snapshot' (the animals see the positions at the start of the step), 'parallel' (as 'snapshot', with all the animals deciding at the same time on several threads). Default value: 'sequential'.").build());
+
+        // threads
+        cmdLineOptions.addOption(Option.builder("th").longOpt("threads").hasArg().desc("Number of worker threads of the 'parallel' engine. Only the sensing (decisions), the eating and the index updates run on them, the kills, matings and moves between regions stay sequential. Default value: the number of available processors.").build());
+
+        // ensemble
+        cmdLineOptions.addOption(Option.builder("r").longOpt("replicates").hasArg().desc("Batch mode only. Number of independent runs of the input file, run at the same time. Each run writes its output to its own file (the output file name followed by the seed) and the output file gets a summary of all of them. Default value: 1.").build());
+        cmdLineOptions.addOption(Option.builder("sd").longOpt("seeds").hasArg().desc("Batch mode only. Comma separated seeds of the runs, one run per seed. Default value: consecutive seeds from " + _default_seed + ".").build());
+
+        // sweep
+        cmdLineOptions.addOption(Option.builder("sw").longOpt("sweep").hasArg().desc("Batch mode only. Parameter sweep file: the values of some data fields of the builders (a grid of values or a latin hypercube of ranges), each point of the sweep is run once per seed. The output file gets one CSV row per run, with the animals alive at the end by diet.").build());
+
+        // snapshots
+        cmdLineOptions.addOption(Option.builder("se").longOpt("snapshot-every").hasArg().desc("Batch mode only. Writes the state of the animals every that many steps, as one JSON line per state, to a file named as the output file with the extension .ndjson. Default value: no snapshots.").build());
+        cmdLineOptions.addOption(Option.builder("sf").longOpt("snapshot-format").hasArg().desc("Format of the snapshots. Possible values: 'ndjson', 'binary' (columnar trajectory, extension .traj, that can be replayed in the GUI or converted to ndjson in batch mode by giving it as the input file). Default value: 'ndjson'.").build());
+
+        // checkpoints
+        cmdLineOptions.addOption(Option.builder("ce").longOpt("checkpoint-every").hasArg().desc("Batch mode only. Saves the whole simulation every that many steps to a file named as the output file with the extension .ckpt, written in the background. A .ckpt file given as the input file goes on with that simulation (in batch mode up to the same total time), with the same results as if it had not stopped. Default value: no checkpoints.").build());
+
         return cmdLineOptions;
     }
 
@@ -200,6 +255,128 @@ public class Main {
         }
     }
 
+    private static void parse_spatial_index_option(CommandLine line) throws ParseException {
+        if (line.hasOption("si")) {
+            _spatial_index = line.getOptionValue("si");
+            try {
+                _index_factory.create_instance(new JSONObject().put("type", _spatial_index));
+            } catch (IllegalArgumentException e) {
+                throw new ParseException("Invalid value for spatial index: " + _spatial_index);
+            }
+        }
+    }
+
+    private static void parse_engine_option(CommandLine line) throws ParseException {
+        String e = line.getOptionValue("e", _engine.toString());
+        try {
+            _engine = Engine.valueOf(e.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new ParseException("Invalid value for engine: " + e);
+        }
+    }
+
+    private static void parse_threads_option(CommandLine line) throws ParseException {
+        if (line.hasOption("th")) {
+            String th = line.getOptionValue("th");
+            try {
+                _threads = Integer.parseInt(th);
+            } catch (NumberFormatException e) {
+                throw new ParseException("Invalid value for threads: " + th);
+            }
+            if (_threads <= 0) {
+                throw new ParseException("Invalid value for threads: " + th);
+            }
+        }
+    }
+
+    private static void parse_ensemble_options(CommandLine line) throws ParseException {
+        if (!line.hasOption("r") && !line.hasOption("sd"))
+            return;
+        if (_mode != ExecMode.BATCH)
+            throw new ParseException("Replicates and seeds are only valid in batch mode");
+
+        int n = -1;
+        if (line.hasOption("r")) {
+            String r = line.getOptionValue("r");
+            try {
+                n = Integer.parseInt(r);
+            } catch (NumberFormatException e) {
+                throw new ParseException("Invalid value for replicates: " + r);
+            }
+            if (n <= 0)
+                throw new ParseException("Invalid value for replicates: " + r);
+        }
+
+        if (line.hasOption("sd")) {
+            String[] sd = line.getOptionValue("sd").split(",");
+            if (n != -1 && n != sd.length)
+                throw new ParseException("The number of seeds does not match the number of replicates");
+            _seeds = new long[sd.length];
+            for (int i = 0; i < sd.length; i++) {
+                try {
+                    _seeds[i] = Long.parseLong(sd[i].trim());
+                } catch (NumberFormatException e) {
+                    throw new ParseException("Invalid value for seed: " + sd[i]);
+                }
+            }
+        } else {
+            _seeds = new long[n];       // the first run is the same as a run without replicates
+            for (int i = 0; i < n; i++)
+                _seeds[i] = _default_seed + i;
+        }
+    }
+
+    private static void parse_sweep_option(CommandLine line) throws ParseException {
+        if (line.hasOption("sw")) {
+            if (_mode != ExecMode.BATCH)
+                throw new ParseException("A sweep is only valid in batch mode");
+            _sweep_file = line.getOptionValue("sw");
+        }
+    }
+
+    private static void parse_snapshot_option(CommandLine line) throws ParseException {
+        if (line.hasOption("se")) {
+            String se = line.getOptionValue("se");
+            try {
+                _snapshot_every = Integer.parseInt(se);
+            } catch (NumberFormatException e) {
+                throw new ParseException("Invalid value for snapshot-every: " + se);
+            }
+            if (_snapshot_every <= 0)
+                throw new ParseException("Invalid value for snapshot-every: " + se);
+            if (_mode != ExecMode.BATCH || _seeds != null || _sweep_file != null)
+                throw new ParseException("Snapshots are only valid in batch mode with a single run");
+        }
+        if (line.hasOption("sf")) {
+            if (!line.hasOption("se"))
+                throw new ParseException("A snapshot format is only valid with snapshot-every");
+            String sf = line.getOptionValue("sf");
+            if (sf.equalsIgnoreCase("binary"))
+                _binary_snapshots = true;
+            else if (!sf.equalsIgnoreCase("ndjson"))
+                throw new ParseException("Invalid value for snapshot-format: " + sf);
+        }
+    }
+
+    private static void parse_checkpoint_option(CommandLine line) throws ParseException {
+        if (line.hasOption("ce")) {
+            String ce = line.getOptionValue("ce");
+            try {
+                _checkpoint_every = Integer.parseInt(ce);
+            } catch (NumberFormatException e) {
+                throw new ParseException("Invalid value for checkpoint-every: " + ce);
+            }
+            if (_checkpoint_every <= 0)
+                throw new ParseException("Invalid value for checkpoint-every: " + ce);
+            if (_mode != ExecMode.BATCH || _seeds != null || _sweep_file != null)
+                throw new ParseException("Checkpoints are only valid in batch mode with a single run");
+        }
+        if (is_checkpoint(_in_file) && (_seeds != null || _sweep_file != null))
+            throw new ParseException("A checkpoint can only be resumed as a single run");
+        if (is_checkpoint(_in_file) && _spatial_index != null)      // indexing again would change the results
+            throw new ParseException("The spatial index of a checkpoint cannot be changed");
+    }
+
     private static void init_factories() {
         // initialize the strategies factory
         List<Builder<SelectionStrategy>> selection_strategy_builders = new ArrayList<>();
@@ -222,6 +399,14 @@ public class Main {
         region_builders.add(new DynamicSupplyRegionBuilder());
 
         _region_factory = new BuilderBasedFactory<Region>(region_builders);
+
+        // initialize the neighbour index factory
+        List<Builder<NeighborIndex>> index_builders = new ArrayList<>();
+        index_builders.add(new GridIndexBuilder());
+        index_builders.add(new QuadTreeIndexBuilder());
+        index_builders.add(new KdTreeIndexBuilder());
+
+        _index_factory = new BuilderBasedFactory<NeighborIndex>(index_builders);
     }
 
     private static JSONObject load_JSON_file(InputStream in) {
@@ -229,45 +414,186 @@ public class Main {
     }
 
     private static void start_batch_mode() throws Exception {
-        InputStream is = new FileInputStream(new File(_in_file));
-        OutputStream os = new FileOutputStream(new File(_out_file));
+        if (is_checkpoint(_in_file)) {      // the map of the checkpoint replaces the default one
+            _sim = new Simulator(_default_cols, _default_rows, _default_width, _default_height, _animals_factory, _region_factory, _index_factory);
+            _controller = new Controller(_sim);
+            try (InputStream is = new FileInputStream(new File(_in_file))) {
+                _controller.load_checkpoint(is);
+            }
+        } else {        // read as it is loaded, the whole JSON tree is never built
+            try (ScenarioReader r = new ScenarioReader(Path.of(_in_file))) {
+                int width = r.get_int("width");
+                int height = r.get_int("height");
+                int rows = r.get_int("rows");
+                int cols = r.get_int("cols");
+
+                _sim = new Simulator(cols, rows, width, height, _animals_factory, _region_factory, _index_factory);
+                _controller = new Controller(_sim);
+                _controller.load_data(r);
+            }
+        }
+        if (_spatial_index != null)     // the command line wins over the input file
+            _controller.set_spatial_index(_spatial_index);
+        _controller.set_engine(_engine);
+        if (_threads != null)
+            _controller.set_threads(_threads);
+        CheckpointRecorder cr = null;
+        if (_checkpoint_every > 0) {
+            cr = new CheckpointRecorder(_controller, Path.of(with_extension(_out_file, ".ckpt")), _checkpoint_every);
+            _controller.addObserver(cr);
+        }
+        try (OutputStream os = new FileOutputStream(new File(_out_file))) {
+            if (_snapshot_every > 0 && _binary_snapshots) {
+                SnapshotWriter sw = new TrajectoryWriter(Path.of(with_extension(_out_file, ".traj")), _sim.get_map_info(), SNAPSHOT_QUEUE);
+                _controller.run(_time, _dtime, _sv, os, new SnapshotRecorder(sw, _snapshot_every));
+            } else if (_snapshot_every > 0) {
+                try (OutputStream ss = new FileOutputStream(new File(with_extension(_out_file, ".ndjson")))) {
+                    _controller.run(_time, _dtime, _sv, os, new SnapshotRecorder(new NdjsonWriter(ss, SNAPSHOT_QUEUE), _snapshot_every));
+                }
+            } else {
+                _controller.run(_time, _dtime, _sv, os);
+            }
+        } finally {
+            if (cr != null) {
+                _controller.removeObserver(cr);
+                cr.close();
+            }
+            _controller.close();
+        }
+    }
 
+    private static Ensemble load_ensemble() throws Exception {
+        InputStream is = new FileInputStream(new File(_in_file));
         JSONObject jo = load_JSON_file(is);
+        is.close();
+
+        Ensemble ensemble = new Ensemble(jo, _animals_factory, _region_factory, _index_factory);
+        ensemble.set_setup(c -> {       // the same options as a single batch run
+            if (_spatial_index != null)
+                c.set_spatial_index(_spatial_index);
+            c.set_engine(_engine);
+            if (_threads != null)
+                c.set_threads(_threads);
+        });
+        return ensemble;
+    }
+
+    private static int runners() {      // simultaneous runs of an ensemble or a sweep
+        int runners = Runtime.getRuntime().availableProcessors();
+        if (_engine == Engine.PARALLEL)     // every run has its own workers
+            runners = Math.max(1, runners / (_threads != null ? _threads : runners));
+        return runners;
+    }
+
+    private static void start_ensemble_mode() throws Exception {
+        Ensemble ensemble = load_ensemble();
 
-        int width = jo.getInt("width");
-        int height = jo.getInt("height");
-        int rows = jo.getInt("rows");
-        int cols = jo.getInt("cols");
+        // out.json -> out.<seed>.json for every run, out.json gets the summary
+        String ext = extension(_out_file);
+        String base = _out_file.substring(0, _out_file.length() - ext.length());
 
-        _sim = new Simulator(cols, rows, width, height, _animals_factory, _region_factory);
-        _controller = new Controller(_sim);
-        _controller.load_data(jo);
-        _controller.run(_time, _dtime, _sv, os);
+        JSONObject summary = ensemble.run(_seeds, runners(), _time, _dtime, seed -> {
+            try {
+                return new FileOutputStream(new File(base + "." + seed + ext));
+            } catch (FileNotFoundException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        OutputStream os = new FileOutputStream(new File(_out_file));
+        PrintStream ps = new PrintStream(os);
+        ps.println(summary.toString(2));
+        ps.close();
+    }
 
+    private static void start_sweep_mode() throws Exception {
+        InputStream is = new FileInputStream(new File(_in_file));
+        JSONObject scenario = load_JSON_file(is);
         is.close();
-        os.close();
+        is = new FileInputStream(new File(_sweep_file));
+        JSONObject spec = load_JSON_file(is);
+        is.close();
+
+        Sweep sweep = new Sweep(scenario, spec, load_ensemble());
+        PrintStream ps = new PrintStream(new FileOutputStream(new File(_out_file)));
+        sweep.run(_seeds != null ? _seeds : new long[] { _default_seed }, runners(), _time, _dtime, ps);
+        ps.close();
+    }
+
+    private static String extension(String file) {     // ".json" of "out.json", "" if there is none
+        int dot = file.lastIndexOf('.');
+        return dot > file.lastIndexOf(File.separatorChar) ? file.substring(dot) : "";
+    }
+
+    private static String with_extension(String file, String ext) {
+        return file.substring(0, file.length() - extension(file).length()) + ext;
+    }
+
+    private static boolean is_trajectory(String file) {
+        return file != null && extension(file).equals(".traj");
+    }
+
+    private static boolean is_checkpoint(String file) {
+        return file != null && extension(file).equals(".ckpt");
+    }
+
+    private static void start_trajectory_batch_mode() throws Exception {
+        // a binary trajectory as input: written again as ndjson snapshots
+        try (TrajectoryReader r = new TrajectoryReader(Path.of(_in_file))) {
+            OutputStream os = new FileOutputStream(new File(_out_file));
+            NdjsonWriter w = new NdjsonWriter(os, SNAPSHOT_QUEUE);
+            for (int i = 0; i < r.get_num_ticks(); i++) {
+                TrajectoryReader.Tick tick = r.get_tick(i);
+                w.submit(tick.get_time(), tick.get_animals());
+            }
+            w.close();
+            os.close();
+        }
     }
 
     private static void start_GUI_mode() throws Exception {
-        if(_in_file == null) {      // if no input file is provided, start with default values
-            _sim = new Simulator(_default_cols, _default_rows, _default_width, _default_height, _animals_factory, _region_factory);
+        if (is_trajectory(_in_file)) {       // replay of a recorded trajectory, there is no simulation
+            TrajectoryReader r = new TrajectoryReader(Path.of(_in_file));
+            SwingUtilities.invokeAndWait(() -> new ReplayWindow(r));
+        }
+        else if(_in_file == null) {      // if no input file is provided, start with default values
+            _sim = new Simulator(_default_cols, _default_rows, _default_width, _default_height, _animals_factory, _region_factory, _index_factory);
             _controller = new Controller(_sim);
+            if (_spatial_index != null)
+                _controller.set_spatial_index(_spatial_index);
+            _controller.set_engine(_engine);
+            if (_threads != null)
+                _controller.set_threads(_threads);
             SwingUtilities.invokeAndWait(() -> new MainWindow(_controller));
         }
-        else{       // same as batch mode, but with GUI invoked instead of run() method
-            InputStream is = new FileInputStream(new File(_in_file));
-
-            JSONObject jo = load_JSON_file(is);
-    
-            int width = jo.getInt("width");
-            int height = jo.getInt("height");
-            int rows = jo.getInt("rows");
-            int cols = jo.getInt("cols");
-    
-            _sim = new Simulator(cols, rows, width, height, _animals_factory, _region_factory);
+        else if (is_checkpoint(_in_file)) {     // the saved simulation, it goes on from where it stopped
+            _sim = new Simulator(_default_cols, _default_rows, _default_width, _default_height, _animals_factory, _region_factory, _index_factory);
             _controller = new Controller(_sim);
-            SwingUtilities.invokeAndWait(() -> new MainWindow(_controller));        // fist create the GUI to add the observers
-            _controller.load_data(jo);      // then load the data and notify the observers
+            _controller.set_engine(_engine);
+            if (_threads != null)
+                _controller.set_threads(_threads);
+            SwingUtilities.invokeAndWait(() -> new MainWindow(_controller));
+            InputStream is = new FileInputStream(new File(_in_file));
+            _controller.load_checkpoint(is);
+            is.close();
+        }
+        else{       // same as batch mode, but with GUI invoked instead of run() method
+            try (ScenarioReader r = new ScenarioReader(Path.of(_in_file))) {
+                int width = r.get_int("width");
+                int height = r.get_int("height");
+                int rows = r.get_int("rows");
+                int cols = r.get_int("cols");
+
+                _sim = new Simulator(cols, rows, width, height, _animals_factory, _region_factory, _index_factory);
+                _controller = new Controller(_sim);
+                _controller.set_engine(_engine);
+                if (_threads != null)
+                    _controller.set_threads(_threads);
+                SwingUtilities.invokeAndWait(() -> new MainWindow(_controller));        // fist create the GUI to add the observers
+                _controller.load_data(r);       // then load the data and notify the observers
+            }
+            if (_spatial_index != null)
+                _controller.set_spatial_index(_spatial_index);
         }
     }
 
@@ -276,7 +602,14 @@ public class Main {
         parse_args(args);
         switch (_mode) {
             case BATCH:
-                start_batch_mode();
+                if (is_trajectory(_in_file))
+                    start_trajectory_batch_mode();
+                else if (_sweep_file != null)
+                    start_sweep_mode();
+                else if (_seeds != null)
+                    start_ensemble_mode();
+                else
+                    start_batch_mode();
                 break;
 
             case GUI:
@@ -286,7 +619,7 @@ public class Main {
     }
 
     public static void main(String[] args) {
-        Utils._rand.setSeed(2147483647l);
+        Utils.rand().setSeed(_default_seed);
         try {
             start(args);
         } catch (Exception e) {
@@ -0,0 +1,74 @@
+package simulator.misc;
+
+import java.util.random.RandomGenerator;
+
+// SplitMix64 generator (the algorithm of java.util.SplittableRandom). split() derives an independent stream, so
+// every animal and region can own one and the results do not depend on the order in which they draw numbers.
+// Unlike SplittableRandom the state can be read and restored. Not thread safe, a stream has a single owner.
+public final class RandomStream implements RandomGenerator {
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long _seed;
+	private long _gamma;		// always odd
+
+	public RandomStream() {
+		this(mix64(System.nanoTime()) ^ mix64(System.currentTimeMillis()));
+	}
+
+	public RandomStream(long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+
+	private RandomStream(long seed, long gamma) {
+		_seed = seed;
+		_gamma = gamma;
+	}
+
+	public void setSeed(long seed) {
+		set_state(seed, GOLDEN_GAMMA);
+	}
+
+	public RandomStream split() {
+		return new RandomStream(nextLong(), mix_gamma(next_seed()));
+	}
+
+	@Override
+	public long nextLong() {
+		return mix64(next_seed());
+	}
+
+	// the whole state, to save and restore a stream
+	public long get_seed() {
+		return _seed;
+	}
+
+	public long get_gamma() {
+		return _gamma;
+	}
+
+	public void set_state(long seed, long gamma) {
+		if ((gamma & 1L) == 0)
+			throw new IllegalArgumentException("Invalid gamma, it must be odd");
+		_seed = seed;
+		_gamma = gamma;
+	}
+
+	private long next_seed() {
+		return _seed += _gamma;
+	}
+
+	// output function of the generator, public for streams whose state is kept in primitive arrays (seed += gamma)
+	public static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private static long mix_gamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int n = Long.bitCount(z ^ (z >>> 1));		// avoid gammas with too few bit transitions
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+}
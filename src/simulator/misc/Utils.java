@@ -1,9 +1,24 @@
 package simulator.misc;
 
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public class Utils {
-	public static final Random _rand = new Random();
+	// root stream, only used while loading (sequentially). Animals and regions draw from streams split from it
+	private static final RandomStream _rand = new RandomStream();
+	// a thread that loads its own simulation (ensemble runs) sets its own root, the others share the one above
+	private static final ThreadLocal<RandomStream> _thread_rand = new ThreadLocal<>();
+
+	public static RandomStream rand() {
+		RandomStream r = _thread_rand.get();
+		return r != null ? r : _rand;
+	}
+
+	public static void set_thread_rand(RandomStream r) {		// null goes back to the shared root
+		if (r == null)
+			_thread_rand.remove();
+		else
+			_thread_rand.set(r);
+	}
 
 	public static double constrain_value_in_range(double value, double min, double max) {
 		value = value > max ? max : value;
@@ -12,8 +27,12 @@ public class Utils {
 	}
 
 	public static double get_randomized_parameter(double value, double tolerance) {
+		return get_randomized_parameter(rand(), value, tolerance);
+	}
+
+	public static double get_randomized_parameter(RandomGenerator rand, double value, double tolerance) {
 		assert (tolerance > 0 && tolerance <= 1);
-		double t = (_rand.nextDouble() - 0.5) * 2 * tolerance;
+		double t = (rand.nextDouble() - 0.5) * 2 * tolerance;
 		return value * (1 + t);
 	}
 
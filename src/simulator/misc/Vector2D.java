@@ -1,5 +1,7 @@
 package simulator.misc;
 
+import java.util.random.RandomGenerator;
+
 import org.json.JSONArray;
 
 public class Vector2D {
@@ -35,7 +37,38 @@ public class Vector2D {
 
 	// return the distance between this and that
 	public double distanceTo(Vector2D that) {
-		return minus(that).magnitude();
+		return Math.sqrt(distanceSqTo(that));
+	}
+
+	// return the squared distance between this and that (no square root, no allocation)
+	public double distanceSqTo(Vector2D that) {
+		double dx = _x - that._x;
+		double dy = _y - that._y;
+		return dx * dx + dy * dy;
+	}
+
+	// in-place variants, only for vectors that are not shared with anybody else
+	public Vector2D set(double x, double y) {
+		_x = x;
+		_y = y;
+		return this;
+	}
+
+	public Vector2D set(Vector2D that) {
+		return set(that._x, that._y);
+	}
+
+	// this += (target - this).direction() * length, without intermediate vectors
+	public Vector2D moveTowards(Vector2D target, double length) {
+		double dx = target._x - _x;
+		double dy = target._y - _y;
+		double m = Math.sqrt(dx * dx + dy * dy);
+		if (m > 0.0) {
+			double inv = 1.0 / m;
+			dx = dx * inv;
+			dy = dy * inv;
+		}
+		return set(_x + dx * length, _y + dy * length);
 	}
 
 	// create and return a new object whose value is (this + that)
@@ -64,8 +97,9 @@ public class Vector2D {
 
 	// return the corresponding unit vector
 	public Vector2D direction() {
-		if (magnitude() > 0.0)
-			return scale(1.0 / magnitude());
+		double m = magnitude();
+		if (m > 0.0)
+			return scale(1.0 / m);
 		else
 			return new Vector2D(this);
 	}
@@ -103,9 +137,13 @@ public class Vector2D {
 	}
 
 	public static Vector2D get_random_vector(double width, double height) {
+		return get_random_vector(Utils.rand(), width, height);
+	}
+
+	public static Vector2D get_random_vector(RandomGenerator rand, double width, double height) {
 
-		double x = Utils._rand.nextDouble() * (width);
-		double y = Utils._rand.nextDouble() * (height);
+		double x = rand.nextDouble() * (width);
+		double y = rand.nextDouble() * (height);
 		assert (x >= 0 && x <= width);
 		assert (y >= 0 && y <= height);
 		return new Vector2D(x, y);
@@ -1,37 +1,66 @@
 package simulator.model;
 
 import org.json.JSONObject;
+import org.json.JSONWriter;
+import simulator.misc.RandomStream;
 import simulator.misc.Utils;
 import simulator.misc.Vector2D;
 
 import java.util.Objects;
 
 public abstract class Animal implements Entity, AnimalInfo {
+    // the state of an animal is kept in its own fields (primitive doubles, a position updated in place), there is no
+    // store of columns indexed by id and AnimalInfo is the animal itself. Only the searches keep columns, of the
+    // positions: GridIndex and NeighborSnapshot
     protected String _genetic_code;
     protected Diet _diet;
     protected State _state = State.NORMAL;
     protected Vector2D _pos;
     protected Vector2D _dest = null;
-    protected Double _energy = 100.0;
-    protected Double _speed;
-    protected Double _age = 0.0;
-    protected Double _desire = 0.0;
-    protected Double _sight_range;
+    protected double _energy = 100.0;
+    protected double _speed;
+    protected double _age = 0.0;
+    protected double _desire = 0.0;
+    protected double _sight_range;
     protected Animal _mate_target = null;
     protected Animal _baby = null;
     protected AnimalMapView _region_mngr = null;
     protected SelectionStrategy _mate_strategy;
+    protected final double _interaction_distance;     // distance at which the animal interacts with other animals
+    int _id = -1;                   // given by the simulator when the animal is added, in order of arrival
+    protected final RandomStream _rand;     // all the randomness of this animal, split from the root stream or from a parent
+    final Selection _selection = new Selection();      // reused by the neighbour searches of this animal
+    Region _region = null;          // region that currently holds this animal
+    int _region_slot = -1;          // position of this animal in the list of its region
+    NeighborIndex _index = null;    // neighbour index of the species of this animal
+    int _index_slot = -1;           // where that index keeps this animal, its meaning depends on the index
+    int _index_pos = -1;            // position inside that slot, for the indexes that need it (GridIndex)
+    State _counted_state = null;    // state this animal is counted with in its region, see Region.sync_state
+    Vector2D _seen_pos = null;      // what the others perceive of this animal while there is a snapshot
+    State _seen_state = null;
+    double _seen_energy;
+    double _seen_age;
+    private Animal _prey = null;        // interactions decided in update, applied in act
+    private Animal _partner = null;
+    private Animal _baby_of_mating = null;
+    int _kill_step = 0;             // step in which this animal was killed, see Interactions
+    int _mate_step = 0;             // last step in which this animal mated
+    Region _food_region = null;     // region this animal asked for food in this step, served in eat
 
     //CONSTANTS FOR THE ANIMALS
     protected static final double MAX_ENERGY = 100.0;       // Maximum energy of the animal
     protected static final double MAX_DESIRE = 100.0;       // Maximum desire of the animal
     protected static final double MATE_DESIRE = 65.0;       // Desire level at which the animal starts to mate
-    protected static final double INTERACTION_DISTANCE = 8.0;   // Distance at which the animal interacts with other animals
+    public static final double INTERACTION_DISTANCE = 8.0;      // Default distance at which the animal interacts with other animals
     protected static final double BIRTH_PROBABILITY = 0.9;  // Probability of giving birth
 
     protected Animal(String genetic_code, Diet diet, double sight_range, double init_speed, SelectionStrategy mate_strategy, Vector2D pos) throws IllegalArgumentException, NullPointerException {
+        this(genetic_code, diet, sight_range, init_speed, INTERACTION_DISTANCE, mate_strategy, pos);
+    }
+
+    protected Animal(String genetic_code, Diet diet, double sight_range, double init_speed, double interaction_distance, SelectionStrategy mate_strategy, Vector2D pos) throws IllegalArgumentException, NullPointerException {
 
-        if (genetic_code.isEmpty() || sight_range <= 0 || init_speed <= 0) {
+        if (genetic_code.isEmpty() || sight_range <= 0 || init_speed <= 0 || interaction_distance <= 0) {
             throw new IllegalArgumentException("Invalid arguments");
         }
         if (mate_strategy == null) {
@@ -40,9 +69,11 @@ public abstract class Animal implements Entity, AnimalInfo {
         _genetic_code = genetic_code;
         _diet = diet;
         _sight_range = sight_range;
-        _pos = pos;
+        _interaction_distance = interaction_distance;
+        _pos = pos == null ? null : new Vector2D(pos);     // the animal owns its position, it is updated in place
         _mate_strategy = mate_strategy;
-        _speed = Utils.get_randomized_parameter(init_speed, 0.1);
+        _rand = Utils.rand().split();
+        _speed = Utils.get_randomized_parameter(_rand, init_speed, 0.1);
     }
 
     protected Animal(Animal p1, Animal p2) {
@@ -50,13 +81,15 @@ public abstract class Animal implements Entity, AnimalInfo {
         _diet = p1.get_diet();
 
         _mate_strategy = p2._mate_strategy;
+        _interaction_distance = p1._interaction_distance;
 
-        _energy = (p1.get_energy() + p2.get_energy()) / 2;
+        _energy = (p1.get_energy() + p1._region_mngr.get_perceived_energy(p2)) / 2;
 
-        _pos = p1.get_position().plus(Vector2D.get_random_vector(-1, 1).scale(60.0 * (Utils._rand.nextGaussian() + 1)));
+        _rand = p1._rand.split();       // babies are born during update, only the stream of the parent is touched
+        _pos = p1._pos.plus(Vector2D.get_random_vector(_rand, -1, 1).scale(60.0 * (_rand.nextGaussian() + 1)));
 
-        _sight_range = Utils.get_randomized_parameter((p1.get_sight_range() + p2.get_sight_range()) / 2, 0.2);
-        _speed = Utils.get_randomized_parameter((p1.get_speed() + p2.get_speed()) / 2, 0.2);
+        _sight_range = Utils.get_randomized_parameter(_rand, (p1.get_sight_range() + p2.get_sight_range()) / 2, 0.2);
+        _speed = Utils.get_randomized_parameter(_rand, (p1.get_speed() + p2.get_speed()) / 2, 0.2);
 
     }
 
@@ -69,16 +102,92 @@ public abstract class Animal implements Entity, AnimalInfo {
             _pos = random_vector_in_map();
         }
 
-        _pos = clamp_pos();        // Make sure the position is within the map
+        clamp_pos();        // Make sure the position is within the map
         _dest = random_vector_in_map();
     }
 
+    public int get_id() {
+        return _id;
+    }
+
     public State get_state() {
         return _state;
     }
 
-    public Vector2D get_position() {
-        return _pos;
+    protected void set_state(State state) {
+        // counted by the region right away, unless update runs in parallel: then the region counters catch up
+        // after the step (Region.sync_state)
+        _state = state;
+        if (_region != null && !_region_mngr.in_parallel()) _region.sync_state(this);
+    }
+
+    protected Vector2D position_of(Animal other) {
+        return _region_mngr.get_perceived_position(other);
+    }
+
+    protected State state_of(Animal other) {
+        return _region_mngr.get_perceived_state(other);
+    }
+
+    protected double age_of(Animal other) {
+        return _region_mngr.get_perceived_age(other);
+    }
+
+    // update only writes the animal itself, what it does to others is an intent resolved in act
+    protected void kill(Animal prey) {
+        _prey = prey;
+    }
+
+    protected void mate_with(Animal partner, Animal baby) {     // baby: null if the mating gives no baby
+        _partner = partner;
+        _baby_of_mating = baby;
+    }
+
+    // what the animal gets from an intent that was granted
+    protected void on_kill(Animal prey) {
+    }
+
+    protected abstract void on_mate(Animal partner, Animal baby);
+
+    void act(double dt, Interactions interactions) {
+        // second half of a step: the intents on other animals and the request of food to the region
+        if (_prey != null) {
+            if (interactions.claim(_prey)) {
+                _prey.set_state(State.DEAD);
+                on_kill(_prey);
+            }
+            _prey = null;
+        }
+        if (_partner != null) {
+            if (interactions.claim(this, _partner)) {
+                _partner._desire = 0.0;
+                on_mate(_partner, _baby_of_mating);
+            }
+            _partner = null;
+            _baby_of_mating = null;
+        }
+
+        if (_state != State.DEAD) {
+            _food_region = _region;
+            _food_region.request_food(this);
+        }
+    }
+
+    void eat(double dt) {       // after the regions have split the food among the requests of the step
+        if (_food_region != null) {
+            _energy += _region_mngr.get_food(this, dt);
+            if (_energy > MAX_ENERGY) {
+                _energy = MAX_ENERGY;
+            }
+            if (_energy < 0.0) {
+                _energy = 0.0;
+            }
+            _food_region = null;
+        }
+    }
+
+    public Vector2D get_position() {      // a copy, the position of the animal changes in place
+        return new Vector2D(_pos);
     }
 
     public String get_genetic_code() {
@@ -106,7 +215,7 @@ public abstract class Animal implements Entity, AnimalInfo {
     }
 
     public Vector2D get_destination() {
-        return _dest;
+        return new Vector2D(_dest);
     }
 
     public boolean is_pregnant() {
@@ -114,7 +223,7 @@ public abstract class Animal implements Entity, AnimalInfo {
     }
 
     protected Vector2D random_vector_in_map() {
-        return Vector2D.get_random_vector(_region_mngr.get_width(), _region_mngr.get_height());
+        return Vector2D.get_random_vector(_rand, _region_mngr.get_width(), _region_mngr.get_height());
     }
 
     protected Animal deliver_baby() {        // return the baby (for pregnant animals only)
@@ -124,11 +233,20 @@ public abstract class Animal implements Entity, AnimalInfo {
     }
 
     private void move(double speed) {
-        _pos = _pos.plus(_dest.minus(_pos).direction().scale(speed));
+        // same as _pos.plus(_dest.minus(_pos).direction().scale(speed)) but in place
+        _pos.moveTowards(_dest, speed);
+    }
+
+    protected void head_to(Vector2D target) {     // copies the target, the destination is owned by the animal
+        _dest.set(target);
+    }
+
+    protected void head_away_from(Vector2D source) {  // destination one unit away from source
+        _dest.set(_pos).moveTowards(source, -1.0);
     }
 
     protected void move_randomly(double dt, double speed_mul, double enery_mul, double desire_mul) {
-        if (_pos.distanceTo(_dest) < INTERACTION_DISTANCE) {
+        if (_pos.distanceSqTo(_dest) < _interaction_distance * _interaction_distance) {
             _dest = random_vector_in_map();
         }
 
@@ -150,16 +268,16 @@ public abstract class Animal implements Entity, AnimalInfo {
     }
 
     protected Animal search_new_mate_target() {
-        // Search only for animals inside the sight range (_region_mngr.get_animals_in_range)
-        return _mate_strategy.select(this, _region_mngr.get_animals_in_range(this, a -> a.get_genetic_code().equals(_genetic_code)));
+        // Search only for animals inside the sight range (_region_mngr.select_same_species_in_range)
+        return _region_mngr.select_same_species_in_range(this, _mate_strategy);
     }
 
     protected boolean pos_in_bounds() {
         return _pos.getX() >= 0 && _pos.getX() < _region_mngr.get_width() && _pos.getY() >= 0 && _pos.getY() < _region_mngr.get_height();
     }
 
-    protected Vector2D clamp_pos() {
-        // Make sure the position is within the map (0,0) - (width, height)
+    protected void clamp_pos() {
+        // Make sure the position is within the map (0,0) - (width, height), in place
         double x = _pos.getX();
         double y = _pos.getY();
         double width = _region_mngr.get_width();
@@ -170,7 +288,7 @@ public abstract class Animal implements Entity, AnimalInfo {
         while (y >= height) y = y - height;
         while (y < 0) y = y + height;
 
-        return new Vector2D(x, y);
+        _pos.set(x, y);
     }
 
     public JSONObject as_JSON() {
@@ -183,4 +301,14 @@ public abstract class Animal implements Entity, AnimalInfo {
 
         return js;
     }
+
+    @Override
+    public void write_JSON(JSONWriter w) {      // keys in the order as_JSON puts them
+        w.object();
+        w.key("pos").array().value(_pos.getX()).value(_pos.getY()).endArray();
+        w.key("gcode").value(_genetic_code);
+        w.key("diet").value(_diet.toString());
+        w.key("state").value(_state.toString());
+        w.endObject();
+    }
 }
@@ -4,6 +4,8 @@ import simulator.misc.Vector2D;
 
 public interface AnimalInfo extends JSONable {
     // Note that it extends JSONable
+    public int get_id();
+
     public State get_state();
 
     public Vector2D get_position();
@@ -3,6 +3,31 @@ package simulator.model;
 import java.util.List;
 import java.util.function.Predicate;
 
+import simulator.misc.Vector2D;
+
 public interface AnimalMapView extends MapInfo, FoodSupplier {
     public List<Animal> get_animals_in_range(Animal e, Predicate<Animal> filter);
+
+    // typed versions, only the animals that can match are visited
+    public List<Animal> get_animals_in_range(Animal e, Diet diet);
+
+    public List<Animal> get_same_species_in_range(Animal e);
+
+    // same as running the strategy over the lists above, but without building them
+    public Animal select_in_range(Animal e, Diet diet, SelectionStrategy s);
+
+    public Animal select_same_species_in_range(Animal e, SelectionStrategy s);
+
+    // what is seen of another animal: while there is a snapshot, its position and state at the start of the tick
+    public Vector2D get_perceived_position(Animal e);
+
+    public State get_perceived_state(Animal e);
+
+    public double get_perceived_energy(Animal e);
+
+    public double get_perceived_age(Animal e);
+
+    // true while the animals run on several threads (see RegionManager.for_each_animal), their changes of state are
+    // then counted by the regions after the step
+    public boolean in_parallel();
 }
@@ -0,0 +1,244 @@
+package simulator.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import simulator.misc.Vector2D;
+
+// Binary checkpoint of a simulator between two steps, written by Simulator.save_checkpoint and read back by
+// Simulator.load_checkpoint (DataOutput, big endian):
+//   magic, version, time, id of the next animal, step of the interactions, neighbour index specification
+//     ("" for the default one)
+//   map: cols, rows, width, height
+//   animal table: its size and every animal (see write_animal), the animals of the simulation first and in order
+//   number of animals of the simulation
+//   regions with their animals, food grid and neighbour indexes (RegionManager.save)
+//   root random stream: seed, gamma
+// An animal is written once, every reference to it is its number in the table (-1 for null). So the babies not
+// born yet and the targets that already left the map come back as shared objects
+final class Checkpoint {
+    static final int MAGIC = 0x45434f43;       // "ECOC"
+    static final int VERSION = 3;      // 2: k-d tree with bounding boxes, 3: kill and mate claims
+
+    private static final byte SHEEP = 0;
+    private static final byte WOLF = 1;
+    private static final byte DEFAULT_REGION = 0;
+    private static final byte DYNAMIC_REGION = 1;
+    private static final byte NO_STRATEGY = -1;
+    private static final byte SELECT_FIRST = 0;
+    private static final byte SELECT_CLOSEST = 1;
+    private static final byte SELECT_YOUNGEST = 2;
+
+    // numbers of the animals while writing, an animal gets the next one the first time it is referenced
+    static final class Ids {
+        private final Map<Animal, Integer> _ids = new IdentityHashMap<>();
+        private final List<Animal> _table = new ArrayList<>();
+
+        int id(Animal a) {
+            if (a == null) return -1;
+            Integer i = _ids.get(a);
+            if (i == null) {
+                i = _table.size();
+                _ids.put(a, i);
+                _table.add(a);
+            }
+            return i;
+        }
+    }
+
+    private Checkpoint() {
+    }
+
+    static void write_animals(DataOutput out, Ids ids) throws IOException {
+        // the animals referenced by the others are numbered first, then the size of the table is known
+        for (int i = 0; i < ids._table.size(); i++) {
+            Animal a = ids._table.get(i);
+            ids.id(a._mate_target);
+            ids.id(a._baby);
+            if (a instanceof Sheep s) ids.id(s._danger_source);
+            if (a instanceof Wolf w) ids.id(w._hunt_target);
+        }
+
+        out.writeInt(ids._table.size());
+        for (Animal a : ids._table) write_animal(out, a, ids);
+    }
+
+    private static void write_animal(DataOutput out, Animal a, Ids ids) throws IOException {
+        // the arguments of its constructor, then the fields that change while it lives and its references
+        if (a.getClass() == Sheep.class) {
+            Sheep s = (Sheep) a;
+            out.writeByte(SHEEP);
+            out.writeDouble(s.max_age);
+            write_strategy(out, s._danger_strategy);
+        } else if (a.getClass() == Wolf.class) {
+            Wolf w = (Wolf) a;
+            out.writeByte(WOLF);
+            out.writeDouble(w.max_age);
+            out.writeDouble(w.HUNGER_ENERGY);
+            write_strategy(out, w._hunting_strategy);
+        } else {
+            throw new IllegalStateException("Animals of type " + a.getClass().getName() + " cannot be saved");
+        }
+        out.writeDouble(a._interaction_distance);
+        write_strategy(out, a._mate_strategy);
+
+        out.writeInt(a._id);
+        out.writeByte(a._state.ordinal());
+        write_vector(out, a._pos);
+        write_vector(out, a._dest);
+        out.writeDouble(a._energy);
+        out.writeDouble(a._speed);
+        out.writeDouble(a._age);
+        out.writeDouble(a._desire);
+        out.writeDouble(a._sight_range);
+        out.writeInt(a._kill_step);
+        out.writeInt(a._mate_step);
+        out.writeLong(a._rand.get_seed());
+        out.writeLong(a._rand.get_gamma());
+        out.writeBoolean(a._region_mngr != null);      // false for a baby not born yet
+
+        out.writeInt(ids.id(a._mate_target));
+        out.writeInt(ids.id(a._baby));
+        if (a instanceof Sheep s) out.writeInt(ids.id(s._danger_source));
+        if (a instanceof Wolf w) out.writeInt(ids.id(w._hunt_target));
+    }
+
+    static Animal[] read_animals(DataInput in, AnimalMapView map) throws IOException {
+        // the references are solved once the whole table is created
+        Animal[] table = new Animal[in.readInt()];
+        int[] refs = new int[3 * table.length];
+        SelectionStrategy[] strategies = new SelectionStrategy[SELECT_YOUNGEST + 1];      // shared, as the builders do
+        for (int i = 0; i < table.length; i++) {
+            Animal a;
+            byte type = in.readByte();
+            if (type == SHEEP) {
+                double max_age = in.readDouble();
+                SelectionStrategy danger = read_strategy(in, strategies);
+                double distance = in.readDouble();
+                a = new Sheep(read_strategy(in, strategies), danger, null, max_age, distance);
+            } else if (type == WOLF) {
+                double max_age = in.readDouble();
+                double hunger = in.readDouble();
+                SelectionStrategy hunting = read_strategy(in, strategies);
+                double distance = in.readDouble();
+                a = new Wolf(read_strategy(in, strategies), hunting, null, max_age, hunger, distance);
+            } else {
+                throw new IOException("Invalid type of animal in the checkpoint: " + type);
+            }
+
+            a._id = in.readInt();
+            a._state = State.values()[in.readByte()];
+            a._pos = read_vector(in);
+            a._dest = read_vector(in);
+            a._energy = in.readDouble();
+            a._speed = in.readDouble();
+            a._age = in.readDouble();
+            a._desire = in.readDouble();
+            a._sight_range = in.readDouble();
+            a._kill_step = in.readInt();
+            a._mate_step = in.readInt();
+            a._rand.set_state(in.readLong(), in.readLong());
+            a._region_mngr = in.readBoolean() ? map : null;
+
+            refs[3 * i] = in.readInt();
+            refs[3 * i + 1] = in.readInt();
+            refs[3 * i + 2] = in.readInt();
+            table[i] = a;
+        }
+
+        for (int i = 0; i < table.length; i++) {
+            Animal a = table[i];
+            a._mate_target = animal(table, refs[3 * i]);
+            a._baby = animal(table, refs[3 * i + 1]);
+            if (a instanceof Sheep s) s._danger_source = animal(table, refs[3 * i + 2]);
+            if (a instanceof Wolf w) w._hunt_target = animal(table, refs[3 * i + 2]);
+        }
+        return table;
+    }
+
+    private static Animal animal(Animal[] table, int id) throws IOException {
+        if (id < -1 || id >= table.length)
+            throw new IOException("Invalid animal in the checkpoint: " + id);
+        return id == -1 ? null : table[id];
+    }
+
+    static void write_region(DataOutput out, Region r) throws IOException {
+        // the food of a dynamic region is in the food grid of the map, saved on its own
+        if (r.getClass() == DefaultRegion.class)
+            out.writeByte(DEFAULT_REGION);
+        else if (r.getClass() == DynamicSupplyRegion.class)
+            out.writeByte(DYNAMIC_REGION);
+        else
+            throw new IllegalStateException("Regions of type " + r.getClass().getName() + " cannot be saved");
+        out.writeDouble(r._food_rate);
+        out.writeDouble(r._crowd_size);
+        out.writeDouble(r._crowd_penalty);
+        out.writeLong(r._rand.get_seed());
+        out.writeLong(r._rand.get_gamma());
+    }
+
+    static Region read_region(DataInput in) throws IOException {
+        byte type = in.readByte();
+        double rate = in.readDouble();
+        double size = in.readDouble();
+        double penalty = in.readDouble();
+
+        Region r;
+        if (type == DEFAULT_REGION)
+            r = new DefaultRegion(rate, size, penalty);
+        else if (type == DYNAMIC_REGION)
+            r = new DynamicSupplyRegion(0.0, 0.0, rate, size, penalty);
+        else
+            throw new IOException("Invalid type of region in the checkpoint: " + type);
+        r._rand.set_state(in.readLong(), in.readLong());
+        return r;
+    }
+
+    private static void write_strategy(DataOutput out, SelectionStrategy s) throws IOException {
+        // the strategies have no state, their type is enough
+        if (s == null)
+            out.writeByte(NO_STRATEGY);
+        else if (s.getClass() == SelectFirst.class)
+            out.writeByte(SELECT_FIRST);
+        else if (s.getClass() == SelectClosest.class)
+            out.writeByte(SELECT_CLOSEST);
+        else if (s.getClass() == SelectYoungest.class)
+            out.writeByte(SELECT_YOUNGEST);
+        else
+            throw new IllegalStateException("Selection strategies of type " + s.getClass().getName() + " cannot be saved");
+    }
+
+    private static SelectionStrategy read_strategy(DataInput in, SelectionStrategy[] strategies) throws IOException {
+        byte type = in.readByte();
+        if (type == NO_STRATEGY) return null;
+        if (type < 0 || type >= strategies.length)
+            throw new IOException("Invalid selection strategy in the checkpoint: " + type);
+
+        if (strategies[type] == null) {
+            strategies[type] = switch (type) {
+                case SELECT_FIRST -> new SelectFirst();
+                case SELECT_CLOSEST -> new SelectClosest();
+                case SELECT_YOUNGEST -> new SelectYoungest();
+                default -> throw new IOException("Invalid selection strategy in the checkpoint: " + type);
+            };
+        }
+        return strategies[type];
+    }
+
+    private static void write_vector(DataOutput out, Vector2D v) throws IOException {
+        out.writeBoolean(v != null);
+        if (v != null) {
+            out.writeDouble(v.getX());
+            out.writeDouble(v.getY());
+        }
+    }
+
+    private static Vector2D read_vector(DataInput in) throws IOException {
+        return in.readBoolean() ? new Vector2D(in.readDouble(), in.readDouble()) : null;
+    }
+}
@@ -1,18 +1,30 @@
 package simulator.model;
 
 public class DefaultRegion extends Region {
+    public DefaultRegion() {
+    }
+
+    public DefaultRegion(double food_rate, double crowd_size, double crowd_penalty) {
+        super(food_rate, crowd_size, crowd_penalty);
+    }
+
     @Override
     public void update(double dt) {
         // Do nothing
     }
 
     @Override
-    public double get_food(Animal a, double dt) {
-        if (a.get_diet() == Diet.CARNIVORE) {
+    boolean needs_update() {
+        return false;
+    }
+
+    @Override
+    protected double share_food(Diet diet, int n, double dt) {
+        if (diet == Diet.CARNIVORE) {
             return 0.0;
         }
 
-        return 60.0 * Math.exp(-Math.max(0, get_num_herbivores() - 5.0) * 2.0) * dt;
+        return ration(dt);
     }
     
     public String toString() {
@@ -1,32 +1,51 @@
 package simulator.model;
 
-import simulator.misc.Utils;
-
 public class DynamicSupplyRegion extends Region {
-    private double _food;
-    private double _factor;
+    // food and factor live in a slot of a FoodGrid: a grid of its own until the region is placed in a map
+    private FoodGrid _grid;
+    private int _slot;
+    private boolean _attached = false;
 
     public DynamicSupplyRegion(double food, double factor) {
-        _food = food;
-        _factor = factor;
+        this(food, factor, FOOD_RATE, CROWD_SIZE, CROWD_PENALTY);
+    }
+
+    public DynamicSupplyRegion(double food, double factor, double food_rate, double crowd_size, double crowd_penalty) {
+        super(food_rate, crowd_size, crowd_penalty);
+        _grid = new FoodGrid(1);
+        _slot = 0;
+        _grid.set(0, food, factor, _rand);      // from now on the grid draws the coins of the region
+    }
+
+    @Override
+    void attach(FoodGrid grid, int slot) {
+        grid.set(slot, _grid.food(_slot), _grid._factor[_slot], _grid._seed[_slot], _grid._gamma[_slot]);
+        _grid = grid;
+        _slot = slot;
+        _attached = true;
     }
 
     @Override
     public void update(double dt) {
-        if (Utils._rand.nextBoolean()) {
-            _food += dt * _factor;
-        }
+        if (!_attached) _grid.step(dt);     // otherwise the map steps its whole grid
+    }
+
+    @Override
+    boolean needs_update() {
+        return !_attached;
     }
 
     @Override
-    public double get_food(Animal a, double dt) {
-        if (a.get_diet() == Diet.CARNIVORE) {
+    protected double share_food(Diet diet, int n, double dt) {
+        if (diet == Diet.CARNIVORE) {
             return 0.0;
         }
 
-        double ret = Math.min(_food, 60.0 * Math.exp(-Math.max(0, get_num_herbivores() - 5.0) * 2.0) * dt);
+        // everybody gets the usual ration if there is enough food, otherwise the food left is split in equal parts
+        double food = _grid.food(_slot);
+        double ret = Math.min(food / n, ration(dt));
 
-        _food -= ret;
+        _grid._food[_slot] = Math.max(0.0, food - ret * n);
 
         return ret;
     }
@@ -6,6 +6,12 @@ public interface EcoSysObserver {
 	void onRegister(double time, MapInfo map, List<AnimalInfo> animals);
 	void onReset(double time, MapInfo map, List<AnimalInfo> animals);
 	void onAnimalAdded(double time, MapInfo map, List<AnimalInfo> animals, AnimalInfo a);
+	// animals added together (Simulator.add_animals, the babies of a step), notified once. By default an
+	// onAnimalAdded per animal, the observers that refresh on every event override it to refresh only once
+	default void onAnimalsAdded(double time, MapInfo map, List<AnimalInfo> animals, List<AnimalInfo> added) {
+		for (AnimalInfo a : added)
+			onAnimalAdded(time, map, animals, a);
+	}
 	void onRegionSet(int row, int col, MapInfo map, RegionInfo r);
 	void onAvanced(double time, MapInfo map, List<AnimalInfo> animals, double dt);
 }
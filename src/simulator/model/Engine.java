@@ -0,0 +1,5 @@
+package simulator.model;
+
+public enum Engine {
+    SEQUENTIAL, SNAPSHOT, PARALLEL;
+}
@@ -0,0 +1,109 @@
+package simulator.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import simulator.misc.RandomStream;
+
+// Food supply of the dynamic regions of a map in flat primitive arrays, one slot per region (row * cols + col).
+// The regions are views over their slot. The random stream of each region is kept here too (its seed and gamma).
+// Growth is lazy: a step only counts, and a slot catches up with all the steps it missed when its food is read.
+// The steps between two changes of dt form an epoch, dt changes are rare so then every slot catches up
+final class FoodGrid {
+    final double[] _food;
+    final double[] _factor;
+    final long[] _seed;
+    final long[] _gamma;        // 0 if the region in the slot has no dynamic supply (a real gamma is odd)
+    final long[] _last;         // step up to which the slot has grown
+    private long _step = 0;
+    private double _dt = 0.0;   // dt of the steps of the current epoch
+
+    FoodGrid(int slots) {
+        _food = new double[slots];
+        _factor = new double[slots];
+        _seed = new long[slots];
+        _gamma = new long[slots];
+        _last = new long[slots];
+    }
+
+    int size() {
+        return _food.length;
+    }
+
+    void set(int slot, double food, double factor, long seed, long gamma) {
+        _food[slot] = food;
+        _factor[slot] = factor;
+        _seed[slot] = seed;
+        _gamma[slot] = gamma;
+        _last[slot] = _step;
+    }
+
+    void set(int slot, double food, double factor, RandomStream rand) {
+        set(slot, food, factor, rand.get_seed(), rand.get_gamma());
+    }
+
+    void clear(int slot) {
+        set(slot, 0.0, 0.0, 0, 0);
+    }
+
+    void step(double dt) {      // one step of growth for every slot, paid when the slot is read
+        if (dt != _dt) {
+            catch_up(0, size());
+            _dt = dt;
+        }
+        _step++;
+    }
+
+    double food(int slot) {
+        catch_up(slot, slot + 1);
+        return _food[slot];
+    }
+
+    void catch_up(int from, int to) {
+        // every missed step adds dt * factor with probability 1/2, so the food grown in n steps is a binomial draw:
+        // the number of bits set in n random bits of the stream of the slot
+        for (int k = from; k < to; k++) {
+            long n = _step - _last[k];
+            _last[k] = _step;
+            if (n == 0 || _gamma[k] == 0) continue;
+
+            long heads = 0;
+            long s = _seed[k];
+            for (; n >= 64; n -= 64) {
+                s += _gamma[k];
+                heads += Long.bitCount(RandomStream.mix64(s));
+            }
+            if (n > 0) {
+                s += _gamma[k];
+                heads += Long.bitCount(RandomStream.mix64(s) >>> (64 - n));
+            }
+            _seed[k] = s;
+            _food[k] += heads * (_dt * _factor[k]);
+        }
+    }
+
+    void save(DataOutput out) throws IOException {      // as it is, the slots that did not catch up yet too
+        out.writeLong(_step);
+        out.writeDouble(_dt);
+        for (int k = 0; k < size(); k++) {
+            out.writeDouble(_food[k]);
+            out.writeDouble(_factor[k]);
+            out.writeLong(_seed[k]);
+            out.writeLong(_gamma[k]);
+            out.writeLong(_last[k]);
+        }
+    }
+
+    void restore(DataInput in) throws IOException {
+        _step = in.readLong();
+        _dt = in.readDouble();
+        for (int k = 0; k < size(); k++) {
+            _food[k] = in.readDouble();
+            _factor[k] = in.readDouble();
+            _seed[k] = in.readLong();
+            _gamma[k] = in.readLong();
+            _last[k] = in.readLong();
+        }
+    }
+}
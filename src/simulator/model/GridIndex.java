@@ -0,0 +1,150 @@
+package simulator.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+// Uniform grid of buckets, only the cells overlapping the sight circle are visited (see GridSearch)
+public class GridIndex extends GridSearch implements NeighborIndex {
+    private final double _req_cell_size;     // requested cell size, 0 means use the region size
+    private Cell[] _cells;
+
+    // the animals of a cell and their positions in columns (struct of arrays): a search scans the coordinates
+    // one after the other and only reads the animals in range. update keeps the columns equal to the positions
+    private static final class Cell {
+        Animal[] _animals = new Animal[4];
+        double[] _xs = new double[4];
+        double[] _ys = new double[4];
+        int _size = 0;
+    }
+
+    public GridIndex() {
+        this(0.0);
+    }
+
+    public GridIndex(double cell_size) {
+        if (cell_size < 0.0)
+            throw new IllegalArgumentException("Invalid cell size");
+        _req_cell_size = cell_size;
+    }
+
+    @Override
+    public void init(MapInfo map) {
+        init_cells(map, _req_cell_size > 0.0 ? _req_cell_size : map.get_region_width(),
+                _req_cell_size > 0.0 ? _req_cell_size : map.get_region_height());
+
+        _cells = new Cell[_cols * _rows];
+        for (int i = 0; i < _cells.length; i++) {
+            _cells[i] = new Cell();
+        }
+    }
+
+    @Override
+    public void add(Animal a) {
+        put(a, cell_of(a));
+    }
+
+    @Override
+    public void remove(Animal a) {
+        if (a._index_slot >= 0) take(a);
+    }
+
+    @Override
+    public void update(Animal a) {
+        int cur = cell_of(a);
+        if (a._index_slot != cur) {
+            take(a);
+            put(a, cur);
+        } else {
+            Cell cell = _cells[cur];
+            cell._xs[a._index_pos] = a._pos.getX();
+            cell._ys[a._index_pos] = a._pos.getY();
+        }
+    }
+
+    private void put(Animal a, int c) {
+        Cell cell = _cells[c];
+        if (cell._size == cell._animals.length) {
+            cell._animals = Arrays.copyOf(cell._animals, 2 * cell._size);
+            cell._xs = Arrays.copyOf(cell._xs, 2 * cell._size);
+            cell._ys = Arrays.copyOf(cell._ys, 2 * cell._size);
+        }
+        a._index_slot = c;      // cell of the animal
+        a._index_pos = cell._size++;        // and its position in it
+        cell._animals[a._index_pos] = a;
+        cell._xs[a._index_pos] = a._pos.getX();
+        cell._ys[a._index_pos] = a._pos.getY();
+    }
+
+    private void take(Animal a) {
+        // constant time, as in Region.remove_animal: the last animal of the cell takes the place of the removed one
+        Cell cell = _cells[a._index_slot];
+        int last = --cell._size;
+        if (a._index_pos != last) {
+            Animal moved = cell._animals[last];
+            cell._animals[a._index_pos] = moved;
+            cell._xs[a._index_pos] = cell._xs[last];
+            cell._ys[a._index_pos] = cell._ys[last];
+            moved._index_pos = a._index_pos;
+        }
+        cell._animals[last] = null;
+        a._index_slot = -1;
+        a._index_pos = -1;
+    }
+
+    @Override
+    public void save(DataOutput out, ToIntFunction<Animal> ids) throws IOException {
+        for (Cell cell : _cells) {
+            out.writeInt(cell._size);
+            for (int k = 0; k < cell._size; k++) out.writeInt(ids.applyAsInt(cell._animals[k]));
+        }
+    }
+
+    @Override
+    public void restore(DataInput in, IntFunction<Animal> animals) throws IOException {
+        for (int c = 0; c < _cells.length; c++) {
+            for (int n = in.readInt(); n > 0; n--) {
+                put(animals.apply(in.readInt()), c);
+            }
+        }
+    }
+
+    @Override
+    void query_cell(int c, Animal a, double x, double y, double range_sq, Predicate<Animal> filter, List<Animal> out) {
+        Cell cell = _cells[c];
+        for (int k = 0; k < cell._size; k++) {
+            Animal animal = cell._animals[k];
+            if (animal != a && distance_sq(cell, k, x, y) < range_sq && filter.test(animal)) {
+                out.add(animal);
+            }
+        }
+    }
+
+    @Override
+    void select_in_cell(int c, Animal a, double x, double y, double range_sq, Selection sel) {
+        Cell cell = _cells[c];
+        for (int k = 0; k < cell._size; k++) {
+            double d = distance_sq(cell, k, x, y);
+            if (d < range_sq && cell._animals[k] != a) sel.offer(cell._animals[k], d);
+        }
+    }
+
+    private static double distance_sq(Cell cell, int k, double x, double y) {     // same as Vector2D.distanceSqTo
+        double dx = cell._xs[k] - x;
+        double dy = cell._ys[k] - y;
+        return dx * dx + dy * dy;
+    }
+
+    private int cell_of(Animal a) {
+        return cell_of(a._pos.getX(), a._pos.getY());
+    }
+
+    public String toString() {
+        return "Grid index";
+    }
+}
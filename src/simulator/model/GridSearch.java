@@ -0,0 +1,98 @@
+package simulator.model;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+// Neighbour search over a uniform grid of cells covering the map. The cells around the searching animal are
+// visited here, the subclasses only scan a cell: GridIndex (live columns) and NeighborSnapshot (frozen arrays)
+abstract class GridSearch implements NeighborSearch {
+    double _cell_width;
+    double _cell_height;
+    int _cols;
+    int _rows;
+
+    void init_cells(MapInfo map, double cell_width, double cell_height) {
+        _cell_width = cell_width;
+        _cell_height = cell_height;
+        _cols = (int) Math.ceil(map.get_width() / _cell_width);
+        _rows = (int) Math.ceil(map.get_height() / _cell_height);
+    }
+
+    // adds to out the animals of cell c (except a) that pass the filter and whose squared distance to (x, y) is
+    // below range_sq
+    abstract void query_cell(int c, Animal a, double x, double y, double range_sq, Predicate<Animal> filter,
+                             List<Animal> out);
+
+    // offers to sel the animals of cell c (except a) whose squared distance to (x, y) is below range_sq
+    abstract void select_in_cell(int c, Animal a, double x, double y, double range_sq, Selection sel);
+
+    @Override
+    public final void query(Animal a, double range, Predicate<Animal> filter, List<Animal> out) {
+        double x = a._pos.getX();
+        double y = a._pos.getY();
+
+        int col_from = clamp_index((int) Math.floor((x - range) / _cell_width), _cols);
+        int col_to = clamp_index((int) Math.floor((x + range) / _cell_width), _cols);
+        int row_from = clamp_index((int) Math.floor((y - range) / _cell_height), _rows);
+        int row_to = clamp_index((int) Math.floor((y + range) / _cell_height), _rows);
+
+        for (int i = row_from; i <= row_to; i++) {
+            for (int j = col_from; j <= col_to; j++) {
+                query_cell(i * _cols + j, a, x, y, range * range, filter, out);
+            }
+        }
+    }
+
+    @Override
+    public final void select(Animal a, double range, Selection sel) {
+        double x = a._pos.getX();
+        double y = a._pos.getY();
+
+        int col_from = clamp_index((int) Math.floor((x - range) / _cell_width), _cols);
+        int col_to = clamp_index((int) Math.floor((x + range) / _cell_width), _cols);
+        int row_from = clamp_index((int) Math.floor((y - range) / _cell_height), _rows);
+        int row_to = clamp_index((int) Math.floor((y + range) / _cell_height), _rows);
+
+        if (!sel.nearest_first()) {       // same order as query
+            for (int i = row_from; i <= row_to; i++) {
+                for (int j = col_from; j <= col_to; j++) {
+                    select_in_cell(i * _cols + j, a, x, y, range * range, sel);
+                    if (sel.done(0.0)) return;
+                }
+            }
+            return;
+        }
+
+        // visit rings of cells around the cell of a, ring k is at least at the distance from a to the
+        // border of the block of cells of the rings before it
+        int col = clamp_index((int) Math.floor(x / _cell_width), _cols);
+        int row = clamp_index((int) Math.floor(y / _cell_height), _rows);
+        int rings = Math.max(Math.max(col - col_from, col_to - col), Math.max(row - row_from, row_to - row));
+
+        for (int k = 0; k <= rings; k++) {
+            if (k > 0) {
+                double bound = Math.max(0.0, Math.min(Math.min(x - (col - k + 1) * _cell_width, (col + k) * _cell_width - x),
+                        Math.min(y - (row - k + 1) * _cell_height, (row + k) * _cell_height - y)));
+                if (sel.done(bound * bound)) return;
+            }
+
+            for (int i = Math.max(row - k, row_from); i <= Math.min(row + k, row_to); i++) {
+                boolean edge_row = i == row - k || i == row + k;
+                int step = edge_row ? 1 : 2 * k;       // only the first and last column of the inner rows
+                for (int j = col - k; j <= col + k; j += Math.max(step, 1)) {
+                    if (j >= col_from && j <= col_to) {
+                        select_in_cell(i * _cols + j, a, x, y, range * range, sel);
+                    }
+                }
+            }
+        }
+    }
+
+    final int cell_of(double x, double y) {
+        return clamp_index((int) Math.floor(y / _cell_height), _rows) * _cols + clamp_index((int) Math.floor(x / _cell_width), _cols);
+    }
+
+    private static int clamp_index(int i, int n) {     // keeps a cell index inside [0, n - 1]
+        return i < 0 ? 0 : (i >= n ? n - 1 : i);
+    }
+}
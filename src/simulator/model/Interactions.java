@@ -0,0 +1,40 @@
+package simulator.model;
+
+// Claims on the animals taking part in an interaction (a kill or a mating) during the current step. The intents are
+// recorded by update and granted here one by one in a fixed order (the order of the animal list), so the result
+// does not depend on the engine or the number of threads: the first intent on an animal wins. In one step an animal
+// is killed at most once and takes part in at most one mating, with both sides or none. Kills and matings are
+// claimed apart, so an animal that mated earlier in the step can still be killed. A dead animal cannot be claimed
+// for either: a mating is refused when one of its sides (the initiator too) was killed earlier in the step
+final class Interactions {
+    private int _step = 0;
+
+    void next_step() {      // drops the claims of the previous step
+        _step++;
+    }
+
+    int get_step() {        // for the checkpoints, the claims are compared with it
+        return _step;
+    }
+
+    void set_step(int step) {
+        _step = step;
+    }
+
+    boolean claim(Animal a) {       // a kill
+        if (a._kill_step == _step || a.get_state() == State.DEAD) return false;
+        a._kill_step = _step;
+        return true;
+    }
+
+    boolean claim(Animal a, Animal b) {     // a mating, both or none
+        if (a == b || !free_to_mate(a) || !free_to_mate(b)) return false;
+        a._mate_step = _step;
+        b._mate_step = _step;
+        return true;
+    }
+
+    private boolean free_to_mate(Animal a) {
+        return a._mate_step != _step && a.get_state() != State.DEAD;
+    }
+}
@@ -1,9 +1,15 @@
 package simulator.model;
 
 import org.json.JSONObject;
+import org.json.JSONWriter;
 
 public interface JSONable {
     default public JSONObject as_JSON() {
         return new JSONObject();
     }
+
+    // same JSON as as_JSON, written as it is produced (big states are never built in memory)
+    default public void write_JSON(JSONWriter w) {
+        w.value(as_JSON());
+    }
 }
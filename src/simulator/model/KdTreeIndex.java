@@ -0,0 +1,325 @@
+package simulator.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+// 2d-tree built over the positions at build time, every subtree keeps a bounding box of the current positions
+// of its animals. A move only widens the boxes on the way to the animal, so the tree stays valid while the animals
+// move and is rebuilt at most once per step (in step_done), when enough of them moved since the last build
+public class KdTreeIndex implements NeighborIndex {
+    private final double _rebuild_ratio;
+
+    // tree in implicit form: the node of range [lo, hi) is at (lo + hi) / 2, split axis alternates with depth.
+    // Removed animals leave their node empty (null) until the next build
+    private Animal[] _tree = new Animal[0];
+    private double[] _min_x = new double[0];        // bounding box of the subtree rooted at each node
+    private double[] _max_x = new double[0];
+    private double[] _min_y = new double[0];
+    private double[] _max_y = new double[0];
+    private boolean[] _changed = new boolean[0];    // node moved or emptied since the build, counted once
+    private int _changes = 0;
+    private Set<Animal> _added = new LinkedHashSet<>();     // not in the tree yet, the next query or step builds it
+
+    public KdTreeIndex() {
+        this(0.5);
+    }
+
+    public KdTreeIndex(double rebuild_ratio) {
+        if (rebuild_ratio <= 0.0 || rebuild_ratio > 1.0)
+            throw new IllegalArgumentException("Invalid rebuild ratio");
+        _rebuild_ratio = rebuild_ratio;
+    }
+
+    @Override
+    public void init(MapInfo map) {
+        _tree = new Animal[0];
+        resize(0);
+        _changes = 0;
+        _added.clear();
+    }
+
+    @Override
+    public void add(Animal a) {
+        a._index_slot = -1;
+        _added.add(a);
+    }
+
+    @Override
+    public void remove(Animal a) {
+        int slot = a._index_slot;
+        if (slot < 0) {
+            _added.remove(a);
+            return;
+        }
+        _tree[slot] = null;
+        a._index_slot = -1;
+        mark_changed(slot);
+    }
+
+    @Override
+    public void update(Animal a) {
+        int slot = a._index_slot;
+        if (slot < 0) return;       // still to be added to the tree, with its position at that time
+
+        // widen the boxes from the root down to the node of a
+        double x = a._pos.getX();
+        double y = a._pos.getY();
+        int lo = 0;
+        int hi = _tree.length;
+        while (true) {
+            int mid = (lo + hi) >>> 1;
+            if (x < _min_x[mid]) _min_x[mid] = x;
+            if (x > _max_x[mid]) _max_x[mid] = x;
+            if (y < _min_y[mid]) _min_y[mid] = y;
+            if (y > _max_y[mid]) _max_y[mid] = y;
+            if (mid == slot) break;
+            if (slot < mid) hi = mid;
+            else lo = mid + 1;
+        }
+        mark_changed(slot);
+    }
+
+    @Override
+    public void step_done() {
+        if (!_added.isEmpty() || _changes > _rebuild_ratio * Math.max(_tree.length, 1)) rebuild();
+    }
+
+    private void mark_changed(int slot) {
+        if (!_changed[slot]) {
+            _changed[slot] = true;
+            _changes++;
+        }
+    }
+
+    @Override
+    public void save(DataOutput out, ToIntFunction<Animal> ids) throws IOException {
+        // the tree with its boxes as they are, the empty nodes as -1
+        out.writeInt(_tree.length);
+        for (int i = 0; i < _tree.length; i++) {
+            out.writeInt(_tree[i] == null ? -1 : ids.applyAsInt(_tree[i]));
+            out.writeDouble(_min_x[i]);
+            out.writeDouble(_max_x[i]);
+            out.writeDouble(_min_y[i]);
+            out.writeDouble(_max_y[i]);
+            out.writeBoolean(_changed[i]);
+        }
+        out.writeInt(_changes);
+        out.writeInt(_added.size());
+        for (Animal a : _added) out.writeInt(ids.applyAsInt(a));
+    }
+
+    @Override
+    public void restore(DataInput in, IntFunction<Animal> animals) throws IOException {
+        int n = in.readInt();
+        _tree = new Animal[n];
+        resize(n);
+        for (int i = 0; i < n; i++) {
+            int id = in.readInt();
+            if (id >= 0) {
+                _tree[i] = animals.apply(id);
+                _tree[i]._index_slot = i;
+            }
+            _min_x[i] = in.readDouble();
+            _max_x[i] = in.readDouble();
+            _min_y[i] = in.readDouble();
+            _max_y[i] = in.readDouble();
+            _changed[i] = in.readBoolean();
+        }
+        _changes = in.readInt();
+        for (int k = in.readInt(); k > 0; k--) add(animals.apply(in.readInt()));
+    }
+
+    @Override
+    public void query(Animal a, double range, Predicate<Animal> filter, List<Animal> out) {
+        if (!_added.isEmpty()) rebuild();
+        query(0, _tree.length, a, range * range, filter, out);
+    }
+
+    private void query(int lo, int hi, Animal a, double range_sq, Predicate<Animal> filter, List<Animal> out) {
+        if (lo >= hi) return;
+
+        int mid = (lo + hi) >>> 1;
+        if (box_distance_sq(mid, a) >= range_sq) return;
+
+        Animal animal = _tree[mid];
+        if (animal != null && animal != a && filter.test(animal)
+                && animal._pos.distanceSqTo(a._pos) < range_sq) {
+            out.add(animal);
+        }
+        query(lo, mid, a, range_sq, filter, out);
+        query(mid + 1, hi, a, range_sq, filter, out);
+    }
+
+    @Override
+    public void select(Animal a, double range, Selection sel) {
+        if (!_added.isEmpty()) rebuild();
+        if (sel.nearest_first()) {
+            select_nearest(0, _tree.length, a, range * range, sel);
+        } else {
+            select(0, _tree.length, a, range * range, sel);
+        }
+    }
+
+    private void select(int lo, int hi, Animal a, double range_sq, Selection sel) {
+        // same order as query
+        if (lo >= hi) return;
+
+        int mid = (lo + hi) >>> 1;
+        if (box_distance_sq(mid, a) >= range_sq) return;
+
+        select_node(mid, a, range_sq, sel);
+        if (!sel.done(0.0)) select(lo, mid, a, range_sq, sel);
+        if (!sel.done(0.0)) select(mid + 1, hi, a, range_sq, sel);
+    }
+
+    private void select_nearest(int lo, int hi, Animal a, double range_sq, Selection sel) {
+        if (lo >= hi) return;
+
+        int mid = (lo + hi) >>> 1;
+        if (box_distance_sq(mid, a) >= range_sq) return;
+
+        select_node(mid, a, range_sq, sel);
+
+        // the child whose box is closer first, everything in the other one is at least at the distance to its box
+        double d_low = lo < mid ? box_distance_sq((lo + mid) >>> 1, a) : Double.POSITIVE_INFINITY;
+        double d_high = mid + 1 < hi ? box_distance_sq((mid + 1 + hi) >>> 1, a) : Double.POSITIVE_INFINITY;
+        if (d_low <= d_high) {
+            if (sel.done(d_low)) return;
+            select_nearest(lo, mid, a, range_sq, sel);
+            if (sel.done(d_high)) return;
+            select_nearest(mid + 1, hi, a, range_sq, sel);
+        } else {
+            if (sel.done(d_high)) return;
+            select_nearest(mid + 1, hi, a, range_sq, sel);
+            if (sel.done(d_low)) return;
+            select_nearest(lo, mid, a, range_sq, sel);
+        }
+    }
+
+    private void select_node(int i, Animal a, double range_sq, Selection sel) {
+        Animal animal = _tree[i];
+        if (animal != null && animal != a) {
+            double d = animal._pos.distanceSqTo(a._pos);
+            if (d < range_sq) sel.offer(animal, d);
+        }
+    }
+
+    private double box_distance_sq(int i, Animal a) {     // 0 inside the box of the subtree of node i
+        double x = a._pos.getX();
+        double y = a._pos.getY();
+        double dx = x < _min_x[i] ? _min_x[i] - x : (x > _max_x[i] ? x - _max_x[i] : 0.0);
+        double dy = y < _min_y[i] ? _min_y[i] - y : (y > _max_y[i] ? y - _max_y[i] : 0.0);
+        return dx * dx + dy * dy;
+    }
+
+    private void rebuild() {
+        List<Animal> l = new ArrayList<>(_tree.length + _added.size());
+        for (Animal a : _tree) {
+            if (a != null) l.add(a);
+        }
+        l.addAll(_added);
+
+        int n = l.size();
+        _tree = l.toArray(new Animal[n]);
+        resize(n);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = _tree[i]._pos.getX();
+            ys[i] = _tree[i]._pos.getY();
+        }
+        build(0, n, 0, xs, ys);
+        bound(0, n);
+
+        for (int i = 0; i < n; i++) _tree[i]._index_slot = i;
+        _changes = 0;
+        _added.clear();
+    }
+
+    private void resize(int n) {
+        _min_x = new double[n];
+        _max_x = new double[n];
+        _min_y = new double[n];
+        _max_y = new double[n];
+        _changed = new boolean[n];
+    }
+
+    private void build(int lo, int hi, int depth, double[] xs, double[] ys) {
+        if (hi - lo <= 1) return;
+
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, depth % 2 == 0 ? xs : ys, xs, ys);
+        build(lo, mid, depth + 1, xs, ys);
+        build(mid + 1, hi, depth + 1, xs, ys);
+    }
+
+    private void bound(int lo, int hi) {        // boxes of the subtrees, children before their parent
+        int mid = (lo + hi) >>> 1;
+        double x = _tree[mid]._pos.getX();
+        double y = _tree[mid]._pos.getY();
+        _min_x[mid] = x;
+        _max_x[mid] = x;
+        _min_y[mid] = y;
+        _max_y[mid] = y;
+        if (lo < mid) {
+            bound(lo, mid);
+            join(mid, (lo + mid) >>> 1);
+        }
+        if (mid + 1 < hi) {
+            bound(mid + 1, hi);
+            join(mid, (mid + 1 + hi) >>> 1);
+        }
+    }
+
+    private void join(int i, int child) {       // widens the box of i to hold the box of child
+        _min_x[i] = Math.min(_min_x[i], _min_x[child]);
+        _max_x[i] = Math.max(_max_x[i], _max_x[child]);
+        _min_y[i] = Math.min(_min_y[i], _min_y[child]);
+        _max_y[i] = Math.max(_max_y[i], _max_y[child]);
+    }
+
+    private void select(int lo, int hi, int k, double[] key, double[] xs, double[] ys) {
+        // quickselect: leaves the k-th smallest at k, smaller or equal keys before it and greater or equal after it
+        while (lo < hi) {
+            double pivot = key[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (key[i] < pivot) i++;
+                while (key[j] > pivot) j--;
+                if (i <= j) {
+                    swap(i, j, xs, ys);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    private void swap(int i, int j, double[] xs, double[] ys) {
+        Animal a = _tree[i];
+        _tree[i] = _tree[j];
+        _tree[j] = a;
+        double t = xs[i];
+        xs[i] = xs[j];
+        xs[j] = t;
+        t = ys[i];
+        ys[i] = ys[j];
+        ys[j] = t;
+    }
+
+    public String toString() {
+        return "K-d tree index";
+    }
+}
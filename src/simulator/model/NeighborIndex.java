@@ -0,0 +1,31 @@
+package simulator.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+// Neighbour search structure kept up to date by the RegionManager while the animals move
+public interface NeighborIndex extends NeighborSearch {
+    // called once before any animal is added, gives the map dimensions
+    public void init(MapInfo map);
+
+    public void add(Animal a);
+
+    public void remove(Animal a);
+
+    // called every time an animal may have changed its position
+    public void update(Animal a);
+
+    // called once at the end of every step, after the moves, the deaths and the births. A structure that is only
+    // rebuilt from time to time does it here, so it is never rebuilt more than once per step
+    default public void step_done() {
+    }
+
+    // the exact contents of the index for a checkpoint (see Checkpoint), the animals as their numbers in it.
+    // restore is called after init instead of adding the animals, it must give back the same order of visit
+    public void save(DataOutput out, ToIntFunction<Animal> ids) throws IOException;
+
+    public void restore(DataInput in, IntFunction<Animal> animals) throws IOException;
+}
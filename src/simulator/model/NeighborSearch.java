@@ -0,0 +1,14 @@
+package simulator.model;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+// Read side of the neighbour structures, used to answer the perception queries of the animals
+public interface NeighborSearch {
+    // adds to out every animal (except a) that passes the filter and is closer than range to a
+    public void query(Animal a, double range, Predicate<Animal> filter, List<Animal> out);
+
+    // offers to sel every animal (except a) closer than range to a. Visits the closest ones first if the
+    // strategy asks for it, and stops as soon as the selection is done
+    void select(Animal a, double range, Selection sel);
+}
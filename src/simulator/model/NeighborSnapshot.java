@@ -0,0 +1,62 @@
+package simulator.model;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+// Immutable copy of the positions of a group of animals, bucketed by cell in flat arrays (counting sort).
+// Built once at the start of a tick, every perception query of that tick reads it instead of the live positions
+public final class NeighborSnapshot extends GridSearch {
+    private final int[] _cell_start;       // the animals of cell c are in [_cell_start[c], _cell_start[c + 1])
+    private final Animal[] _animals;
+    private final double[] _xs;
+    private final double[] _ys;
+
+    NeighborSnapshot(MapInfo map, List<Animal> animals) {
+        init_cells(map, map.get_region_width(), map.get_region_height());
+
+        int n = animals.size();
+        int[] cell = new int[n];
+        _cell_start = new int[_cols * _rows + 1];
+        for (int i = 0; i < n; i++) {
+            cell[i] = cell_of(animals.get(i)._pos.getX(), animals.get(i)._pos.getY());
+            _cell_start[cell[i] + 1]++;
+        }
+        for (int c = 0; c < _cols * _rows; c++) _cell_start[c + 1] += _cell_start[c];
+
+        _animals = new Animal[n];
+        _xs = new double[n];
+        _ys = new double[n];
+        int[] next = new int[_cols * _rows];
+        for (int i = 0; i < n; i++) {
+            int k = _cell_start[cell[i]] + next[cell[i]]++;
+            _animals[k] = animals.get(i);
+            _xs[k] = animals.get(i)._pos.getX();
+            _ys[k] = animals.get(i)._pos.getY();
+        }
+    }
+
+    @Override
+    void query_cell(int c, Animal a, double x, double y, double range_sq, Predicate<Animal> filter, List<Animal> out) {
+        for (int k = _cell_start[c]; k < _cell_start[c + 1]; k++) {
+            if (_animals[k] != a && filter.test(_animals[k]) && distance_sq(k, x, y) < range_sq) {
+                out.add(_animals[k]);
+            }
+        }
+    }
+
+    @Override
+    void select_in_cell(int c, Animal a, double x, double y, double range_sq, Selection sel) {
+        for (int k = _cell_start[c]; k < _cell_start[c + 1]; k++) {
+            if (_animals[k] != a) {
+                double d = distance_sq(k, x, y);
+                if (d < range_sq) sel.offer(_animals[k], d);
+            }
+        }
+    }
+
+    private double distance_sq(int k, double x, double y) {     // same computation as Vector2D.distanceSqTo
+        double dx = _xs[k] - x;
+        double dy = _ys[k] - y;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,262 @@
+package simulator.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+import simulator.misc.Vector2D;
+
+// Adaptive point quadtree: leaves split when they hold too many animals and merge back when they empty
+public class QuadTreeIndex implements NeighborIndex {
+    private static final int MAX_DEPTH = 16;      // avoids endless splits when many animals share a position
+
+    private final int _capacity;
+    private Node _root;
+    private Map<Animal, Node> _animal_leaf = new HashMap<>();
+
+    private static class Node {
+        final double _x0, _y0, _x1, _y1;
+        final int _depth;
+        final Node _parent;
+        Node[] _children = null;
+        List<Animal> _animals = new ArrayList<>();
+        int _count = 0;         // animals in this subtree
+
+        Node(Node parent, int depth, double x0, double y0, double x1, double y1) {
+            _parent = parent;
+            _depth = depth;
+            _x0 = x0;
+            _y0 = y0;
+            _x1 = x1;
+            _y1 = y1;
+        }
+
+        boolean is_leaf() {
+            return _children == null;
+        }
+
+        boolean contains(Vector2D p) {
+            return p.getX() >= _x0 && p.getX() < _x1 && p.getY() >= _y0 && p.getY() < _y1;
+        }
+
+        Node child_for(Vector2D p) {
+            double mx = (_x0 + _x1) / 2;
+            double my = (_y0 + _y1) / 2;
+            return _children[(p.getX() < mx ? 0 : 1) + (p.getY() < my ? 0 : 2)];
+        }
+
+        double distance_sq_to(Vector2D p) {        // lower bound of the squared distance from p to any point in the node
+            double dx = Math.max(0.0, Math.max(_x0 - p.getX(), p.getX() - _x1));
+            double dy = Math.max(0.0, Math.max(_y0 - p.getY(), p.getY() - _y1));
+            return dx * dx + dy * dy;
+        }
+    }
+
+    public QuadTreeIndex() {
+        this(16);
+    }
+
+    public QuadTreeIndex(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Invalid node capacity");
+        _capacity = capacity;
+    }
+
+    @Override
+    public void init(MapInfo map) {
+        _root = new Node(null, 0, 0.0, 0.0, map.get_width(), map.get_height());
+        _animal_leaf.clear();
+    }
+
+    @Override
+    public void add(Animal a) {
+        insert(_root, a);
+    }
+
+    @Override
+    public void remove(Animal a) {
+        Node leaf = _animal_leaf.remove(a);
+        if (leaf != null) {
+            leaf._animals.remove(a);
+            for (Node n = leaf; n != null; n = n._parent) n._count--;
+            merge_up(leaf._parent);
+        }
+    }
+
+    @Override
+    public void update(Animal a) {
+        Node leaf = _animal_leaf.get(a);
+        if (!leaf.contains(a._pos)) {     // still inside the same leaf, nothing to do
+            remove(a);
+            add(a);
+        }
+    }
+
+    @Override
+    public void save(DataOutput out, ToIntFunction<Animal> ids) throws IOException {
+        save(_root, out, ids);
+    }
+
+    private void save(Node n, DataOutput out, ToIntFunction<Animal> ids) throws IOException {
+        // preorder, a leaf as its animals in order and an inner node as its four children
+        out.writeBoolean(n.is_leaf());
+        if (n.is_leaf()) {
+            out.writeInt(n._animals.size());
+            for (Animal a : n._animals) out.writeInt(ids.applyAsInt(a));
+        } else {
+            for (Node c : n._children) save(c, out, ids);
+        }
+    }
+
+    @Override
+    public void restore(DataInput in, IntFunction<Animal> animals) throws IOException {
+        restore(_root, in, animals);
+    }
+
+    private void restore(Node n, DataInput in, IntFunction<Animal> animals) throws IOException {
+        if (in.readBoolean()) {
+            for (int k = in.readInt(); k > 0; k--) {
+                Animal a = animals.apply(in.readInt());
+                n._animals.add(a);
+                _animal_leaf.put(a, n);
+            }
+            n._count = n._animals.size();
+        } else {
+            split_empty(n);
+            for (Node c : n._children) {
+                restore(c, in, animals);
+                n._count += c._count;
+            }
+        }
+    }
+
+    @Override
+    public void query(Animal a, double range, Predicate<Animal> filter, List<Animal> out) {
+        query(_root, a, range, filter, out);
+    }
+
+    private void query(Node n, Animal a, double range, Predicate<Animal> filter, List<Animal> out) {
+        if (n._count == 0 || n.distance_sq_to(a._pos) >= range * range) return;
+
+        if (n.is_leaf()) {
+            for (Animal animal : n._animals) {
+                if (animal != a && filter.test(animal)
+                        && animal._pos.distanceSqTo(a._pos) < range * range) {
+                    out.add(animal);
+                }
+            }
+        } else {
+            for (Node c : n._children) query(c, a, range, filter, out);
+        }
+    }
+
+    @Override
+    public void select(Animal a, double range, Selection sel) {
+        select(_root, a, range, sel);
+    }
+
+    private void select(Node n, Animal a, double range, Selection sel) {
+        double d = n.distance_sq_to(a._pos);
+        if (n._count == 0 || d >= range * range || sel.done(d)) return;
+
+        if (n.is_leaf()) {
+            for (Animal animal : n._animals) {
+                if (animal != a) {
+                    double da = animal._pos.distanceSqTo(a._pos);
+                    if (da < range * range) sel.offer(animal, da);
+                }
+            }
+        } else if (!sel.nearest_first()) {
+            for (Node c : n._children) select(c, a, range, sel);
+        } else {
+            // children sorted by distance without allocating, a small selection sort over 4 elements
+            double d0 = n._children[0].distance_sq_to(a._pos);
+            double d1 = n._children[1].distance_sq_to(a._pos);
+            double d2 = n._children[2].distance_sq_to(a._pos);
+            double d3 = n._children[3].distance_sq_to(a._pos);
+            int visited = 0;
+            for (int k = 0; k < 4; k++) {
+                int next = -1;
+                double min = Double.POSITIVE_INFINITY;
+                for (int c = 0; c < 4; c++) {
+                    double dc = c == 0 ? d0 : c == 1 ? d1 : c == 2 ? d2 : d3;
+                    if ((visited & (1 << c)) == 0 && (next == -1 || dc < min)) {
+                        next = c;
+                        min = dc;
+                    }
+                }
+                visited |= 1 << next;
+                select(n._children[next], a, range, sel);
+            }
+        }
+    }
+
+    private void insert(Node n, Animal a) {
+        n._count++;
+        while (!n.is_leaf()) {
+            n = n.child_for(a._pos);
+            n._count++;
+        }
+        n._animals.add(a);
+        _animal_leaf.put(a, n);
+
+        if (n._animals.size() > _capacity && n._depth < MAX_DEPTH) split(n);
+    }
+
+    private void split(Node n) {
+        List<Animal> l = n._animals;
+        split_empty(n);
+        for (Animal a : l) {
+            Node c = n.child_for(a._pos);
+            c._animals.add(a);
+            c._count++;
+            _animal_leaf.put(a, c);
+        }
+        for (Node c : n._children) {
+            if (c._animals.size() > _capacity && c._depth < MAX_DEPTH) split(c);
+        }
+    }
+
+    private static void split_empty(Node n) {       // gives n its four children, its animals are not moved
+        double mx = (n._x0 + n._x1) / 2;
+        double my = (n._y0 + n._y1) / 2;
+        n._children = new Node[]{
+                new Node(n, n._depth + 1, n._x0, n._y0, mx, my),
+                new Node(n, n._depth + 1, mx, n._y0, n._x1, my),
+                new Node(n, n._depth + 1, n._x0, my, mx, n._y1),
+                new Node(n, n._depth + 1, mx, my, n._x1, n._y1)
+        };
+        n._animals = null;
+    }
+
+    private void merge_up(Node n) {
+        // collapse the highest ancestor whose subtree fits again in a single leaf
+        Node target = null;
+        for (; n != null; n = n._parent) {
+            if (n._count <= _capacity / 2) target = n;
+        }
+        if (target != null && !target.is_leaf()) {
+            List<Animal> l = new ArrayList<>(target._count);
+            collect(target, l);
+            target._children = null;
+            target._animals = l;
+            for (Animal a : l) _animal_leaf.put(a, target);
+        }
+    }
+
+    private void collect(Node n, List<Animal> l) {
+        if (n.is_leaf()) l.addAll(n._animals);
+        else for (Node c : n._children) collect(c, l);
+    }
+
+    public String toString() {
+        return "Quadtree index";
+    }
+}
@@ -2,26 +2,115 @@ package simulator.model;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONWriter;
+
+import simulator.misc.RandomStream;
+import simulator.misc.Utils;
 
 public abstract class Region implements Entity, FoodSupplier, RegionInfo {
     protected List<Animal> _animals;
+    protected final RandomStream _rand = Utils.rand().split();      // randomness of this region only
+
+    // population counters, kept up to date on every add/remove and state change
+    private int[] _diet_count = new int[Diet.values().length];
+    private int[] _state_count = new int[State.values().length];
+    private Map<String, Integer> _species_count = new HashMap<>();
+
+    // food of the current step: the requests are counted first and then split in equal shares (see split_food)
+    private int[] _food_requests = new int[Diet.values().length];
+    private double[] _food_share = new double[Diet.values().length];
+
+    // ration of an animal per second, smaller in crowded regions: rate * exp(-max(0, herbivores - size) * penalty)
+    public static final double FOOD_RATE = 60.0;
+    public static final double CROWD_SIZE = 5.0;
+    public static final double CROWD_PENALTY = 2.0;
+    final double _food_rate;
+    final double _crowd_size;
+    final double _crowd_penalty;
 
     public Region() {
+        this(FOOD_RATE, CROWD_SIZE, CROWD_PENALTY);
+    }
+
+    protected Region(double food_rate, double crowd_size, double crowd_penalty) {
+        if (food_rate < 0 || crowd_size < 0 || crowd_penalty < 0)
+            throw new IllegalArgumentException("Invalid food rate or crowd parameters");
         _animals = new ArrayList<>();
+        _food_rate = food_rate;
+        _crowd_size = crowd_size;
+        _crowd_penalty = crowd_penalty;
     }
 
     final void add_animal(Animal a) {
+        a._region = this;
+        a._region_slot = _animals.size();
         _animals.add(a);
+        _diet_count[a.get_diet().ordinal()]++;
+        _state_count[a.get_state().ordinal()]++;
+        a._counted_state = a.get_state();
+        _species_count.merge(a.get_genetic_code(), 1, Integer::sum);
     }
 
     final void remove_animal(Animal a) {
-        _animals.remove(a);
+        // constant time: the last animal takes the slot of the removed one
+        Animal last = _animals.remove(_animals.size() - 1);
+        if (last != a) {
+            _animals.set(a._region_slot, last);
+            last._region_slot = a._region_slot;
+        }
+        a._region = null;
+        a._region_slot = -1;
+        _diet_count[a.get_diet().ordinal()]--;
+        _state_count[a._counted_state.ordinal()]--;
+        _species_count.merge(a.get_genetic_code(), -1, Integer::sum);
+    }
+
+    final void sync_state(Animal a) {      // the animal may have changed its state since it was counted
+        if (a._counted_state != a.get_state()) {
+            _state_count[a._counted_state.ordinal()]--;
+            _state_count[a.get_state().ordinal()]++;
+            a._counted_state = a.get_state();
+        }
+    }
+
+    final void request_food(Animal a) {
+        _food_requests[a.get_diet().ordinal()]++;
+    }
+
+    final void split_food(double dt) {      // once every animal of the step has asked
+        for (Diet d : Diet.values()) {
+            int n = _food_requests[d.ordinal()];
+            _food_share[d.ordinal()] = n == 0 ? 0.0 : share_food(d, n, dt);
+            _food_requests[d.ordinal()] = 0;
+        }
+    }
+
+    @Override
+    public final double get_food(Animal a, double dt) {     // the share of a in this step
+        return _food_share[a.get_diet().ordinal()];
     }
 
+    void attach(FoodGrid grid, int slot) {     // the region was placed in that slot of the map, see DynamicSupplyRegion
+    }
+
+    boolean needs_update() {       // false if update does nothing, then the map does not call it every step
+        return true;
+    }
+
+    protected final double ration(double dt) {     // the usual food of a herbivore in this step
+        return _food_rate * Math.exp(-Math.max(0, get_num_herbivores() - _crowd_size) * _crowd_penalty) * dt;
+    }
+
+    // food given to each one of the n animals with that diet that asked for it in this step, the region takes
+    // the total (n times the share) from its supply. The share does not depend on the order of the requests
+    protected abstract double share_food(Diet diet, int n, double dt);
+
     final List<Animal> getAnimals() {
         return Collections.unmodifiableList(_animals);
     }
@@ -39,14 +128,30 @@ public abstract class Region implements Entity, FoodSupplier, RegionInfo {
         return jo;
     }
 
+    @Override
+    public void write_JSON(JSONWriter w) {
+        w.object().key("animals").array();
+        for (Animal a : _animals) a.write_JSON(w);
+        w.endArray().endObject();
+    }
+
     protected int get_num_herbivores() {
-        int num_herbivores = 0;
-        for (Animal a : _animals) {
-            if (a.get_diet() == Diet.HERBIVORE) {
-                num_herbivores++;
-            }
-        }
-        return num_herbivores;
+        return _diet_count[Diet.HERBIVORE.ordinal()];
+    }
+
+    @Override
+    public int get_num_animals(Diet diet) {
+        return _diet_count[diet.ordinal()];
+    }
+
+    @Override
+    public int get_num_animals(State state) {
+        return _state_count[state.ordinal()];
+    }
+
+    @Override
+    public int get_num_animals(String genetic_code) {
+        return _species_count.getOrDefault(genetic_code, 0);
     }
 
     public List<AnimalInfo> getAnimalsInfo() {
@@ -4,4 +4,11 @@ import java.util.List;
 
 public interface RegionInfo extends JSONable {
 	public List<AnimalInfo> getAnimalsInfo();
+
+	// number of animals in the region with the given diet, state or genetic code
+	public int get_num_animals(Diet diet);
+
+	public int get_num_animals(State state);
+
+	public int get_num_animals(String genetic_code);
 }
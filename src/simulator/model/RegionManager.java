@@ -1,10 +1,20 @@
 package simulator.model;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONWriter;
+
+import simulator.misc.Vector2D;
 
 public class RegionManager implements AnimalMapView {
     private final int _width;
@@ -15,9 +25,24 @@ public class RegionManager implements AnimalMapView {
     private final int _region_height;
 
     private Region[][] _regions;
-    private Map<Animal, Region> _animal_region = new HashMap<>();
+    private final FoodGrid _food_grid;      // food of the dynamic regions in flat arrays
+    private final boolean[] _needs_update;      // regions (row * cols + col) whose update does something
+    private Supplier<? extends NeighborIndex> _index_supplier;
+    private Map<Species, NeighborIndex> _indexes = new LinkedHashMap<>();  // one neighbour index per species
+    private Map<Species, NeighborSnapshot> _snapshot = null;        // frozen positions, see take_snapshot
+    private boolean _parallel = false;      // inside for_each_animal
+
+    private record Species(String gcode, Diet diet) {
+        static Species of(Animal a) {
+            return new Species(a.get_genetic_code(), a.get_diet());
+        }
+    }
 
     public RegionManager(int cols, int rows, int width, int height) {
+        this(cols, rows, width, height, GridIndex::new);
+    }
+
+    public RegionManager(int cols, int rows, int width, int height, Supplier<? extends NeighborIndex> index_supplier) {
         _cols = cols;
         _rows = rows;
         _width = width;
@@ -31,11 +56,17 @@ public class RegionManager implements AnimalMapView {
         _region_height = _height / rows + (height % rows != 0 ? 1 : 0);
         _regions = new Region[rows][cols];
 
+        _food_grid = new FoodGrid(rows * cols);
+        _needs_update = new boolean[rows * cols];
+
         for (int i = 0; i < rows; i++) {    // initialize regions
             for (int j = 0; j < cols; j++) {
                 _regions[i][j] = new DefaultRegion();
+                _needs_update[i * cols + j] = _regions[i][j].needs_update();
             }
         }
+
+        _index_supplier = index_supplier;
     }
 
     @Override
@@ -70,68 +101,311 @@ public class RegionManager implements AnimalMapView {
 
     @Override
     public double get_food(Animal a, double dt) {
-        return _animal_region.get(a).get_food(a, dt);
+        return a._food_region != null ? a._food_region.get_food(a, dt) : 0.0;     // the region it asked, it may have moved
     }
 
     @Override
     public List<Animal> get_animals_in_range(Animal a, Predicate<Animal> filter) {
         List<Animal> in_range = new ArrayList<>();
-        for (Animal animal : _animal_region.keySet()) {
-            if (animal != a && filter.test(animal)
-                    && animal.get_position().distanceTo(a.get_position()) < a.get_sight_range()) {
-                in_range.add(animal);
-            }
+        for (NeighborSearch search : searches().values()) {
+            search.query(a, a.get_sight_range(), filter, in_range);
         }
         return in_range;
     }
 
+    @Override
+    public List<Animal> get_animals_in_range(Animal a, Diet diet) {
+        // only the species with that diet are searched
+        List<Animal> in_range = new ArrayList<>();
+        for (Map.Entry<Species, ? extends NeighborSearch> e : searches().entrySet()) {
+            if (e.getKey().diet() == diet)
+                e.getValue().query(a, a.get_sight_range(), animal -> true, in_range);
+        }
+        return in_range;
+    }
+
+    @Override
+    public List<Animal> get_same_species_in_range(Animal a) {
+        List<Animal> in_range = new ArrayList<>();
+        for (Map.Entry<Species, ? extends NeighborSearch> e : searches().entrySet()) {
+            if (e.getKey().gcode().equals(a.get_genetic_code()))
+                e.getValue().query(a, a.get_sight_range(), animal -> true, in_range);
+        }
+        return in_range;
+    }
+
+    @Override
+    public Animal select_in_range(Animal a, Diet diet, SelectionStrategy s) {
+        Selection sel = a._selection.start(a, s);
+        for (Map.Entry<Species, ? extends NeighborSearch> e : searches().entrySet()) {
+            if (e.getKey().diet() == diet) {
+                e.getValue().select(a, a.get_sight_range(), sel);
+                if (sel.done(0.0)) break;
+            }
+        }
+        return sel.get_best();
+    }
+
+    @Override
+    public Animal select_same_species_in_range(Animal a, SelectionStrategy s) {
+        Selection sel = a._selection.start(a, s);
+        for (Map.Entry<Species, ? extends NeighborSearch> e : searches().entrySet()) {
+            if (e.getKey().gcode().equals(a.get_genetic_code())) {
+                e.getValue().select(a, a.get_sight_range(), sel);
+                if (sel.done(0.0)) break;
+            }
+        }
+        return sel.get_best();
+    }
+
+    @Override
+    public Vector2D get_perceived_position(Animal a) {
+        return frozen(a) ? a._seen_pos : a._pos;
+    }
+
+    @Override
+    public State get_perceived_state(Animal a) {
+        return frozen(a) ? a._seen_state : a.get_state();
+    }
+
+    @Override
+    public double get_perceived_energy(Animal a) {
+        return frozen(a) ? a._seen_energy : a.get_energy();
+    }
+
+    @Override
+    public double get_perceived_age(Animal a) {
+        return frozen(a) ? a._seen_age : a.get_age();
+    }
+
+    @Override
+    public boolean in_parallel() {
+        return _parallel;
+    }
+
+    private boolean frozen(Animal a) {      // the snapshot holds the animals in the map, the rest are seen as they are
+        return _snapshot != null && a._region != null;
+    }
+
+    private Map<Species, ? extends NeighborSearch> searches() {  // the snapshot while there is one, else the live indexes
+        return _snapshot != null ? _snapshot : _indexes;
+    }
+
+    void take_snapshot() {
+        // freezes the current positions, until drop_snapshot the perception queries are answered with them
+        Map<Species, List<Animal>> groups = new LinkedHashMap<>();
+        for (Species k : _indexes.keySet()) groups.put(k, new ArrayList<>());
+        for (Region[] region : _regions) {
+            for (Region r : region) {
+                for (Animal a : r._animals) {
+                    groups.get(Species.of(a)).add(a);
+                    if (a._seen_pos == null) a._seen_pos = new Vector2D(a._pos);
+                    else a._seen_pos.set(a._pos);
+                    a._seen_state = a.get_state();
+                    a._seen_energy = a.get_energy();
+                    a._seen_age = a.get_age();
+                }
+            }
+        }
+
+        Map<Species, NeighborSnapshot> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<Species, List<Animal>> e : groups.entrySet()) {
+            snapshot.put(e.getKey(), new NeighborSnapshot(this, e.getValue()));
+        }
+        _snapshot = snapshot;
+    }
+
+    void drop_snapshot() {
+        _snapshot = null;
+    }
+
+    protected void set_neighbor_index(Supplier<? extends NeighborIndex> index_supplier) {
+        // replaces the neighbour indexes, the animals already in the map are indexed again
+        _index_supplier = index_supplier;
+        _indexes.clear();
+        for (Region[] region : _regions) {
+            for (Region r : region) {
+                for (Animal a : r._animals) {
+                    a._index = index_of(a);
+                    a._index.add(a);
+                }
+            }
+        }
+    }
+
+    private NeighborIndex index_of(Animal a) {     // the index of the species of a, created on first use
+        return _indexes.computeIfAbsent(Species.of(a), k -> {
+            NeighborIndex index = _index_supplier.get();
+            index.init(this);
+            return index;
+        });
+    }
+
     protected void set_region(int row, int col, Region r) {
         // r is not null, no factory returns null regions
         List<Animal> l = _regions[row][col].getAnimals();
         for (Animal a : l) {
-            r.add_animal(a);
-            _animal_region.put(a, r); // update the animal region map
+            r.add_animal(a);    // the animal now points to its new region
         }
         _regions[row][col] = r;
+        _food_grid.clear(row * _cols + col);
+        r.attach(_food_grid, row * _cols + col);
+        _needs_update[row * _cols + col] = r.needs_update();
     }
 
     protected void register_animal(Animal a) {
         a.init(this);
         Region r = get_animal_region(a); // get the region where the animal is
-        r.add_animal(a);
-        _animal_region.put(a, r); // update the animal region map
+        r.add_animal(a);    // the region keeps the animal and the animal its region
+        a._index = index_of(a);
+        a._index.add(a);
     }
 
     protected void unregister_animal(Animal a) {
-
-        _animal_region.get(a).remove_animal(a);
-        _animal_region.remove(a);
+        a._region.remove_animal(a);
+        a._index.remove(a);
     }
 
     protected void update_animal_region(Animal a) { // manages animal region changes
+        move_to_region(a);
+        a._index.update(a);
+    }
+
+    void move_to_region(Animal a) {     // same as update_animal_region but leaves the neighbour index as it is
         Region cur = get_animal_region(a);
-        Region last = _animal_region.get(a);
+        Region last = a._region;
 
         if (last != cur) {
             last.remove_animal(a);
             cur.add_animal(a);
-            _animal_region.put(a, cur);
+        } else {
+            cur.sync_state(a);
+        }
+    }
+
+    void for_each_animal(ForkJoinPool pool, int tiles, Consumer<Animal> action) {
+        // parallel sensing only: the animals in region order (row-major, so each tile is a strip of neighbouring
+        // regions) cut in tiles with the same number of animals, however uneven the regions are. Recomputed on every
+        // call, it follows the herds. A tile owns no animals: there is no hand-over between tiles and no halo, the
+        // action may only write its own animal and the moves between regions are made afterwards in one thread
+        Region[] flat = new Region[_rows * _cols];
+        int[] start = new int[flat.length + 1];     // first animal of each region in the whole sequence
+        for (int i = 0; i < _rows; i++) {
+            for (int j = 0; j < _cols; j++) {
+                int k = i * _cols + j;
+                flat[k] = _regions[i][j];
+                start[k + 1] = start[k] + flat[k]._animals.size();
+            }
+        }
+
+        int n = start[flat.length];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        _parallel = true;       // written before the tasks are submitted, so they all see it
+        try {
+            for (int t = 0; t < tiles; t++) {
+                int from = (int) ((long) n * t / tiles);
+                int to = (int) ((long) n * (t + 1) / tiles);
+                if (from < to) tasks.add(pool.submit(() -> for_each_animal(flat, start, from, to, action)));
+            }
+            for (ForkJoinTask<?> t : tasks) t.join();
+        } finally {
+            _parallel = false;
+        }
+    }
+
+    private static void for_each_animal(Region[] flat, int[] start, int from, int to, Consumer<Animal> action) {
+        int k = Arrays.binarySearch(start, from);
+        if (k < 0) k = -k - 2;      // region holding the animal number from
+        while (start[k + 1] <= from) k++;    // skip empty regions
+        for (int i = from; i < to; k++) {
+            List<Animal> l = flat[k]._animals;
+            for (int j = i - start[k]; j < l.size() && i < to; j++, i++) action.accept(l.get(j));
+        }
+    }
+
+    void update_indexes(List<Animal> animals, ForkJoinPool pool) {
+        // the indexes are independent, each one is brought up to date by its own task (in the order of animals)
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (NeighborIndex index : _indexes.values()) {
+            tasks.add(pool.submit(() -> {
+                for (Animal a : animals) {
+                    if (a._index == index) index.update(a);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> t : tasks) t.join();
+    }
+
+    void step_done() {
+        for (NeighborIndex index : _indexes.values()) index.step_done();
+    }
+
+    void save(DataOutput out, Checkpoint.Ids ids) throws IOException {
+        // the regions with their animals in order, the food grid and the indexes in the order of their species
+        for (Region[] region : _regions) {
+            for (Region r : region) {
+                Checkpoint.write_region(out, r);
+                out.writeInt(r._animals.size());
+                for (Animal a : r._animals) out.writeInt(ids.id(a));
+            }
+        }
+        _food_grid.save(out);
+        out.writeInt(_indexes.size());
+        for (Map.Entry<Species, NeighborIndex> e : _indexes.entrySet()) {
+            out.writeUTF(e.getKey().gcode());
+            out.writeByte(e.getKey().diet().ordinal());
+            e.getValue().save(out, ids::id);
+        }
+    }
+
+    void restore(DataInput in, Animal[] table) throws IOException {
+        // on a new manager, with the animals of the checkpoint already created (see Checkpoint.read_animals)
+        for (int i = 0; i < _rows; i++) {
+            for (int j = 0; j < _cols; j++) {
+                Region r = Checkpoint.read_region(in);
+                set_region(i, j, r);
+                for (int n = in.readInt(); n > 0; n--) r.add_animal(table[in.readInt()]);
+            }
+        }
+        _food_grid.restore(in);     // after set_region, that clears the slots
+        _indexes.clear();
+        for (int n = in.readInt(); n > 0; n--) {
+            Species k = new Species(in.readUTF(), Diet.values()[in.readByte()]);
+            NeighborIndex index = _index_supplier.get();
+            index.init(this);
+            index.restore(in, id -> table[id]);
+            _indexes.put(k, index);
+        }
+        for (Region[] region : _regions) {
+            for (Region r : region) {
+                for (Animal a : r._animals) a._index = _indexes.get(Species.of(a));
+            }
         }
     }
 
     private Region get_animal_region(Animal a) { // for the moment this function stays private as only is used
         // internally
         // maybe in the future visibility will change
-        int col = ((int) a.get_position().getX()) / _region_width;
-        int row = ((int) a.get_position().getY()) / _region_height;
+        int col = ((int) a._pos.getX()) / _region_width;
+        int row = ((int) a._pos.getY()) / _region_height;
 
         return _regions[row][col];
     }
 
-    void update_all_regions(double dt) {
+    void split_food(double dt) {
         for (Region[] region : _regions) {
             for (Region r : region) {
-                r.update(dt);
+                r.split_food(dt);
+            }
+        }
+    }
+
+    void update_all_regions(double dt) {
+        _food_grid.step(dt);        // the dynamic regions grow when their food is read, see FoodGrid
+
+        for (int i = 0; i < _rows; i++) {
+            for (int j = 0; j < _cols; j++) {
+                if (_needs_update[i * _cols + j]) _regions[i][j].update(dt);
             }
         }
     }
@@ -154,6 +428,23 @@ public class RegionManager implements AnimalMapView {
         return jo2;
     }
 
+    @Override
+    public void write_JSON(JSONWriter w) {      // as_JSON, one region at a time
+        // the keys in the order as_JSON puts them: row, col and then the data, the biggest one
+        w.object().key("regiones").array();
+        for (int i = 0; i < _rows; i++) {
+            for (int j = 0; j < _cols; j++) {
+                w.object();
+                w.key("row").value(_region_width * i);
+                w.key("col").value(_region_height * j);
+                w.key("data");
+                _regions[i][j].write_JSON(w);
+                w.endObject();
+            }
+        }
+        w.endArray().endObject();
+    }
+
     @Override
     public Iterator<MapInfo.RegionData> iterator() {        // iterator for the regions
         return new Iterator<MapInfo.RegionData>() {
@@ -10,11 +10,26 @@ public class SelectClosest implements SelectionStrategy {
         }
         Animal closest = as.get(0);
         for(Animal animal : as) {
-            if(a != animal && a.get_position().distanceTo(animal.get_position()) < a.get_position().distanceTo(closest.get_position())) {
+            if(a != animal && a._pos.distanceSqTo(animal._pos) < a._pos.distanceSqTo(closest._pos)) {
                 closest = animal;
             }
         }
 
         return  closest == a ? null : closest;
     }
+
+    @Override
+    public Animal pick(Animal a, Animal best, double best_dist_sq, Animal candidate, double dist_sq) {
+        return best == null || dist_sq < best_dist_sq ? candidate : best;
+    }
+
+    @Override
+    public boolean done(Animal a, Animal best, double best_dist_sq, double bound_sq) {
+        return best != null && best_dist_sq <= bound_sq;
+    }
+
+    @Override
+    public boolean nearest_first() {
+        return true;
+    }
 }
@@ -12,4 +12,14 @@ public class SelectFirst implements SelectionStrategy {
         }
         return null;
     }
+
+    @Override
+    public Animal pick(Animal a, Animal best, double best_dist_sq, Animal candidate, double dist_sq) {
+        return best == null ? candidate : best;
+    }
+
+    @Override
+    public boolean done(Animal a, Animal best, double best_dist_sq, double bound_sq) {
+        return best != null;    // the first one found is kept
+    }
 }
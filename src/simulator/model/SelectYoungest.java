@@ -10,10 +10,15 @@ public class SelectYoungest implements SelectionStrategy {
         }
         Animal youngest = as.get(0);
         for (Animal animal : as) {
-            if (youngest != a && animal.get_age() < youngest.get_age()){
+            if (youngest != a && a.age_of(animal) < a.age_of(youngest)){
                 youngest = animal;
             }
         }
         return youngest == a ? null : youngest;
     }
+
+    @Override
+    public Animal pick(Animal a, Animal best, double best_dist_sq, Animal candidate, double dist_sq) {
+        return best == null || a.age_of(candidate) < a.age_of(best) ? candidate : best;
+    }
 }
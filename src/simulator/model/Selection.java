@@ -0,0 +1,36 @@
+package simulator.model;
+
+// Running result of a fused neighbour selection. Every animal owns one and reuses it for its own queries
+final class Selection {
+    private Animal _a;
+    private SelectionStrategy _s;
+    private Animal _best;
+    private double _best_dist_sq;
+
+    Selection start(Animal a, SelectionStrategy s) {
+        _a = a;
+        _s = s;
+        _best = null;
+        _best_dist_sq = Double.POSITIVE_INFINITY;
+        return this;
+    }
+
+    void offer(Animal candidate, double dist_sq) {      // squared distance from the candidate to the animal
+        if (_s.pick(_a, _best, _best_dist_sq, candidate, dist_sq) == candidate) {
+            _best = candidate;
+            _best_dist_sq = dist_sq;
+        }
+    }
+
+    boolean done(double bound_sq) {     // nothing at squared distance >= bound_sq can replace the current choice
+        return _s.done(_a, _best, _best_dist_sq, bound_sq);
+    }
+
+    boolean nearest_first() {
+        return _s.nearest_first();
+    }
+
+    Animal get_best() {
+        return _best;
+    }
+}
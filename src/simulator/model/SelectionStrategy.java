@@ -4,4 +4,18 @@ import java.util.List;
 
 public interface SelectionStrategy {
     Animal select(Animal a, List<Animal> as);
+
+    // Incremental form used by the neighbour searches, so no candidate list has to be built. Returns the
+    // preferred one between best (null if there is none yet) and candidate, with their squared distances to a
+    Animal pick(Animal a, Animal best, double best_dist_sq, Animal candidate, double dist_sq);
+
+    // true if no candidate at squared distance >= bound_sq from a can be preferred over best (lets the search stop early)
+    default boolean done(Animal a, Animal best, double best_dist_sq, double bound_sq) {
+        return false;
+    }
+
+    // true if the search should visit the closest candidates first
+    default boolean nearest_first() {
+        return false;
+    }
 }
\ No newline at end of file
@@ -1,42 +1,50 @@
 package simulator.model;
 
-import simulator.misc.Utils;
 import simulator.misc.Vector2D;
 
 public class Sheep extends Animal {
-    private Animal _danger_source = null;
-    private SelectionStrategy _danger_strategy;
+    Animal _danger_source = null;
+    SelectionStrategy _danger_strategy;
 
     //CONSTANTS FOR SHEEP
-    private final double max_age = 8.0;            // Maximum age of the sheep
+    public static final double MAX_AGE = 8.0;      // Default maximum age of the sheep
+    final double max_age;                          // Maximum age of the sheep
     private final double energy_multiplier = 20.0;        // Multiplier for energy
     private final double desire_multiplier = 40.0;        // Multiplier for desire
 
     public Sheep(SelectionStrategy mate_strategy, SelectionStrategy danger_strategy, Vector2D pos) {
-        super("Sheep", Diet.HERBIVORE, 40.0, 35.0, mate_strategy, pos);
+        this(mate_strategy, danger_strategy, pos, MAX_AGE, INTERACTION_DISTANCE);
+    }
+
+    public Sheep(SelectionStrategy mate_strategy, SelectionStrategy danger_strategy, Vector2D pos, double max_age, double interaction_distance) {
+        super("Sheep", Diet.HERBIVORE, 40.0, 35.0, interaction_distance, mate_strategy, pos);
+        if (max_age <= 0)
+            throw new IllegalArgumentException("Invalid maximum age");
+        this.max_age = max_age;
         _danger_strategy = danger_strategy;
     }
 
     protected Sheep(Sheep p1, Animal p2) {
         super(p1, p2);
+        max_age = p1.max_age;
         _danger_strategy = p1._danger_strategy;
         _danger_source = null;
     }
 
     // STATE MANAGEMENT
     private void switch_to_normal() {
-        _state = State.NORMAL;
+        set_state(State.NORMAL);
         _danger_source = null;
         _mate_target = null;
     }
 
     private void switch_to_mate() {
-        _state = State.MATE;
+        set_state(State.MATE);
         _danger_source = null;
     }
 
     private void switch_to_danger() {
-        _state = State.DANGER;
+        set_state(State.DANGER);
         _mate_target = null;
     }
 
@@ -74,7 +82,7 @@ public class Sheep extends Animal {
 
     private void update_danger(double dt) {
         // Step 1: check if danger source
-        if (_danger_source != null && _danger_source.get_state() == State.DEAD) {
+        if (_danger_source != null && state_of(_danger_source) == State.DEAD) {
             switch_to_normal();
         }
 
@@ -82,13 +90,13 @@ public class Sheep extends Animal {
         if (_danger_source == null) {
             move_randomly(dt, _speed, energy_multiplier, desire_multiplier);
         } else {
-            _dest = _pos.plus(_pos.minus(_danger_source.get_position()).direction());
+            head_away_from(position_of(_danger_source));
 
             move_and_clamp(dt, _speed * 2.0, energy_multiplier * 1.2, desire_multiplier);
         }
 
         // Paso 3: cambio de estado
-        if (_danger_source == null || _danger_source.get_position().distanceTo(_pos) > _sight_range) {
+        if (_danger_source == null || position_of(_danger_source).distanceSqTo(_pos) > _sight_range * _sight_range) {
             _danger_source = search_new_danger_source();
 
             if (_danger_source == null) {
@@ -103,7 +111,7 @@ public class Sheep extends Animal {
 
     private void update_mate(double dt) {
         // Step 1: check mate target
-        if (_mate_target != null && (_mate_target.get_state() == State.DEAD || _mate_target.get_position().distanceTo(_pos) > _sight_range)) {
+        if (_mate_target != null && (state_of(_mate_target) == State.DEAD || position_of(_mate_target).distanceSqTo(_pos) > _sight_range * _sight_range)) {
             _mate_target = null;
         }
 
@@ -115,17 +123,17 @@ public class Sheep extends Animal {
         if (_mate_target == null) {
             move_randomly(dt, _speed, energy_multiplier, desire_multiplier);
         } else {
-            _dest = _mate_target.get_position();
+            head_to(position_of(_mate_target));
 
             move_and_clamp(dt, 2.0 * _speed, energy_multiplier * 1.2, desire_multiplier);
 
-            if (_pos.distanceTo(_mate_target.get_position()) < INTERACTION_DISTANCE) {
+            if (_pos.distanceSqTo(position_of(_mate_target)) < _interaction_distance * _interaction_distance) {
                 _desire = 0.0;
-                _mate_target._desire = 0.0;
-
-                if (_baby == null && Utils._rand.nextDouble() < BIRTH_PROBABILITY) {
-                    _baby = new Sheep(this, _mate_target);
+                Animal baby = null;
+                if (_baby == null && _rand.nextDouble() < BIRTH_PROBABILITY) {
+                    baby = new Sheep(this, _mate_target);
                 }
+                mate_with(_mate_target, baby);      // granted in act, the attempt costs the desire anyway
 
                 _mate_target = null;
             }
@@ -147,6 +155,11 @@ public class Sheep extends Animal {
     }
 
 
+    @Override
+    protected void on_mate(Animal partner, Animal baby) {
+        if (baby != null) _baby = baby;
+    }
+
     @Override
     public void update(double dt) {
         if (_state == State.DEAD) {
@@ -156,26 +169,16 @@ public class Sheep extends Animal {
         update_according_to_state(dt);
 
         if (!pos_in_bounds()) {        // Check if the animal is out of bounds and clamp it
-            _pos = clamp_pos();
+            clamp_pos();
             switch_to_normal();            // If the animal is out of bounds, it will be set to normal state
         }
 
         if (_energy == 0.0 || _age > max_age) {
-            _state = State.DEAD;
-        }
-
-        if (_state != State.DEAD) {
-            _energy += _region_mngr.get_food(this, dt);
-            if (_energy > MAX_ENERGY) {
-                _energy = MAX_ENERGY;
-            }
-            if (_energy < 0.0) {
-                _energy = 0.0;
-            }
+            set_state(State.DEAD);
         }
     }
 
     private Animal search_new_danger_source() {
-        return _danger_strategy.select(this, _region_mngr.get_animals_in_range(this, a -> a.get_diet() == Diet.CARNIVORE));
+        return _region_mngr.select_in_range(this, Diet.CARNIVORE, _danger_strategy);
     }
 }
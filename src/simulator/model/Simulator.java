@@ -1,25 +1,53 @@
 package simulator.model;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 import org.json.JSONObject;
+import org.json.JSONWriter;
 
 import simulator.factories.Factory;
+import simulator.misc.RandomStream;
+import simulator.misc.Utils;
 
 public class Simulator implements JSONable, Observable<EcoSysObserver> {
     private final Factory<Animal> _animal_factory;
     private final Factory<Region> _region_factory;
+    private final Factory<NeighborIndex> _index_factory;
+    private JSONObject _index_spec = null;     // null means the default grid index
     private RegionManager _manager;
-    private List<Animal> _animals = new ArrayList<>();
+    private ArrayList<Animal> _animals = new ArrayList<>();
     private List<EcoSysObserver> _observers;
     private double _time;
+    private int _next_id = 0;       // id of the next animal that is added
+    private Engine _engine = Engine.SEQUENTIAL;
+    private final Interactions _interactions = new Interactions();
+    private int _threads = Runtime.getRuntime().availableProcessors();
+    private ForkJoinPool _pool = null;      // created on the first parallel step
+    private static final int TILES_PER_THREAD = 4;     // more tiles than threads, so a slow tile can be balanced by stealing
 
     public Simulator(int cols, int rows, int width, int height, Factory<Animal> animals_factory, Factory<Region> regions_factory) {
+        this(cols, rows, width, height, animals_factory, regions_factory, null);
+    }
+
+    public Simulator(int cols, int rows, int width, int height, Factory<Animal> animals_factory, Factory<Region> regions_factory,
+                     Factory<NeighborIndex> index_factory) {
         _animal_factory = animals_factory;
         _region_factory = regions_factory;
-        _manager = new RegionManager(cols, rows, width, height);
+        _index_factory = index_factory;
+        _manager = new RegionManager(cols, rows, width, height, this::create_index);
         _observers = new ArrayList<EcoSysObserver>();
         _time = 0.0;
     }
@@ -32,6 +60,10 @@ public class Simulator implements JSONable, Observable<EcoSysObserver> {
         }
     }
 
+    public void default_matrix(JSONObject r_json) {     // same, with the regions of that specification
+        set_regions(0, _manager.get_rows() - 1, 0, _manager.get_cols() - 1, r_json);
+    }
+
     private void set_region(int row, int col, Region r) {
         _manager.set_region(row, col, r);
         notifyRegionSet(row, col, r);       // notify observers
@@ -42,10 +74,63 @@ public class Simulator implements JSONable, Observable<EcoSysObserver> {
         set_region(row, col, _region_factory.create_instance(r_json));
     }
 
+    public void set_regions(int row_from, int row_to, int col_from, int col_to, JSONObject r_json) {
+        // the same specification in a block of regions (bounds included), read only once
+        Supplier<Region> template = _region_factory.create_template(r_json);
+        for (int i = row_from; i <= row_to; i++) {
+            for (int j = col_from; j <= col_to; j++) {
+                set_region(i, j, template.get());
+            }
+        }
+    }
+
+    public void set_spatial_index(JSONObject i_json) {
+        // choose the neighbour index used for the perception of the animals (kept after a reset)
+        if (_index_factory == null)
+            throw new IllegalStateException("No spatial index factory was given to the simulator");
+        _index_factory.create_instance(i_json);     // fail early on an invalid specification
+        _index_spec = i_json;
+        _manager.set_neighbor_index(this::create_index);
+    }
+
+    private NeighborIndex create_index() {
+        return _index_spec == null ? new GridIndex() : _index_factory.create_instance(_index_spec);
+    }
+
+    public void set_engine(Engine engine) {
+        // SNAPSHOT: the animals perceive the positions of the others at the start of the tick
+        // PARALLEL: same perception, all the animals decide at the same time and then the decisions are applied
+        _engine = engine;
+    }
+
+    public void set_threads(int threads) {      // worker threads of the PARALLEL engine
+        if (threads <= 0)
+            throw new IllegalArgumentException("Invalid number of threads");
+        _threads = threads;
+        close();
+    }
+
+    private ForkJoinPool pool() {
+        if (_pool == null) _pool = new ForkJoinPool(_threads);
+        return _pool;
+    }
+
+    public void close() {       // stops the worker threads of the PARALLEL engine, a later step starts them again
+        if (_pool != null) {
+            _pool.shutdown();
+            _pool = null;
+        }
+    }
+
     private void add_animal(Animal a) {
+        register_animal(a);
+        notifyAnimalAdded(a);       // notify observers
+    }
+
+    private void register_animal(Animal a) {
+        a._id = _next_id++;
         _animals.add(a);
         _manager.register_animal(a);    // region manager tracks all animals
-        notifyAnimalAdded(a);       // notify observers
     }
 
     public void add_animal(JSONObject a_json) {
@@ -53,6 +138,17 @@ public class Simulator implements JSONable, Observable<EcoSysObserver> {
         add_animal(_animal_factory.create_instance(a_json));
     }
 
+    public void add_animals(JSONObject a_json, int amount) {
+        // amount animals of the same specification, read only once (see Factory.create_template)
+        if (amount < 0)
+            throw new IllegalArgumentException("Invalid amount of animals");
+        Supplier<Animal> template = _animal_factory.create_template(a_json);
+        int from = _animals.size();
+        _animals.ensureCapacity(from + amount);
+        for (int i = 0; i < amount; i++) register_animal(template.get());
+        notifyAnimalsAdded(from);       // the observers hear of them once
+    }
+
     public MapInfo get_map_info() {
         return _manager;
     }
@@ -68,23 +164,50 @@ public class Simulator implements JSONable, Observable<EcoSysObserver> {
     public void advance(double dt) {
         _time += dt;
 
-        // to not modify the list while iterating over it
-        List<Animal> dead_animals = new ArrayList<>();        // save dead animals to remove them after the iteration
+        // single pass: dead animals leave the map and the survivors are compacted in place (keeping their order)
         List<Animal> pregnant_animals = new ArrayList<>();        // save pregnant animals to add their babies after the iteration
-        for (Animal a : _animals) {
-            if (a.get_state() == State.DEAD) dead_animals.add(a);
-            else if (a.is_pregnant()) pregnant_animals.add(a);
+        int alive = 0;
+        for (int i = 0; i < _animals.size(); i++) {
+            Animal a = _animals.get(i);
+            if (a.get_state() == State.DEAD) {
+                _manager.unregister_animal(a);
+            } else {
+                if (a.is_pregnant()) pregnant_animals.add(a);
+                _animals.set(alive++, a);
+            }
         }
+        _animals.subList(alive, _animals.size()).clear();
 
-        for (Animal a : dead_animals) _manager.unregister_animal(a);        // remove dead animals
-        _animals.removeAll(dead_animals);
+        _interactions.next_step();
+        if (_engine != Engine.SEQUENTIAL) _manager.take_snapshot();
 
-        for (Animal a : _animals) {            // update all animals that are still alive, babies are not currently in the list
-            a.update(dt);
-            _manager.update_animal_region(a);
+        if (_engine == Engine.PARALLEL) {
+            // sense: every animal decides in parallel, reading only itself and the snapshot (the tiles share it, no halos)
+            _manager.for_each_animal(pool(), _threads * TILES_PER_THREAD, a -> a.update(dt));
+            // act: the writes of the decisions in list order, then the neighbour indexes in parallel
+            for (Animal a : _animals) {
+                a.act(dt, _interactions);
+                _manager.move_to_region(a);
+            }
+            _manager.update_indexes(_animals, pool());
+            _manager.split_food(dt);
+            _manager.for_each_animal(pool(), _threads * TILES_PER_THREAD, a -> a.eat(dt));
+        } else {
+            for (Animal a : _animals) {            // update all animals that are still alive, babies are not currently in the list
+                a.update(dt);
+                a.act(dt, _interactions);
+                _manager.update_animal_region(a);
+            }
+            _manager.split_food(dt);
+            for (Animal a : _animals) a.eat(dt);
         }
 
-        for (Animal a : pregnant_animals) add_animal(a.deliver_baby());    // add babies to the simulation
+        _manager.drop_snapshot();
+
+        int born = _animals.size();
+        for (Animal a : pregnant_animals) register_animal(a.deliver_baby());    // add babies to the simulation
+        notifyAnimalsAdded(born);
+        _manager.step_done();
 
         _manager.update_all_regions(dt);
         notifyAdvanced(dt);     // notify observers
@@ -92,11 +215,74 @@ public class Simulator implements JSONable, Observable<EcoSysObserver> {
 
     public void reset(int cols, int rows, int width, int height) {     // reset the simulation
         _animals = new ArrayList<>();
-        _manager = new RegionManager(cols, rows, width, height);
+        _manager = new RegionManager(cols, rows, width, height, this::create_index);
         _time = 0.0;
+        _next_id = 0;
         notifyReset();      // notify observers
     }
 
+    public void save_checkpoint(OutputStream os) throws IOException {
+        // the whole state between two steps (see Checkpoint), a simulator that loads it goes on exactly as this one.
+        // The engine and the threads are not saved, they do not change the results
+        Checkpoint.Ids ids = new Checkpoint.Ids();
+        for (Animal a : _animals) ids.id(a);
+        ByteArrayOutputStream map = new ByteArrayOutputStream();
+        DataOutputStream map_out = new DataOutputStream(map);
+        _manager.save(map_out, ids);        // before the table, an index may hold animals that left the map
+        map_out.flush();
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(Checkpoint.MAGIC);
+        out.writeInt(Checkpoint.VERSION);
+        out.writeDouble(_time);
+        out.writeInt(_next_id);
+        out.writeInt(_interactions.get_step());
+        out.writeUTF(_index_spec == null ? "" : _index_spec.toString());
+        out.writeInt(_manager.get_cols());
+        out.writeInt(_manager.get_rows());
+        out.writeInt(_manager.get_width());
+        out.writeInt(_manager.get_height());
+        Checkpoint.write_animals(out, ids);
+        out.writeInt(_animals.size());
+        map.writeTo(out);
+        RandomStream root = Utils.rand();
+        out.writeLong(root.get_seed());
+        out.writeLong(root.get_gamma());
+        out.flush();
+    }
+
+    public void load_checkpoint(InputStream is) throws IOException {
+        // replaces the simulation by the one of the checkpoint, notifies observers as a reset with the new regions
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != Checkpoint.MAGIC)
+            throw new IOException("Not a checkpoint file");
+        if (in.readInt() != Checkpoint.VERSION)
+            throw new IOException("Unsupported version of the checkpoint file");
+        double time = in.readDouble();
+        int next_id = in.readInt();
+        int step = in.readInt();
+        String spec = in.readUTF();
+        if (!spec.isEmpty() && _index_factory == null)
+            throw new IllegalStateException("No spatial index factory was given to the simulator");
+        _index_spec = spec.isEmpty() ? null : new JSONObject(spec);      // the indexes are created while restoring
+
+        RegionManager manager = new RegionManager(in.readInt(), in.readInt(), in.readInt(), in.readInt(), this::create_index);
+        Animal[] table = Checkpoint.read_animals(in, manager);
+        int n = in.readInt();
+        if (n < 0 || n > table.length)
+            throw new IOException("Invalid number of animals in the checkpoint: " + n);
+        manager.restore(in, table);
+        Utils.rand().set_state(in.readLong(), in.readLong());      // last, creating the objects draws from it
+
+        _manager = manager;
+        _animals = new ArrayList<>(Arrays.asList(table).subList(0, n));
+        _time = time;
+        _next_id = next_id;
+        _interactions.set_step(step);
+        notifyReset();
+        for (MapInfo.RegionData r : _manager) notifyRegionSet(r.row(), r.col(), r.r());
+    }
+
     public JSONObject as_JSON() {
         JSONObject jo = new JSONObject();
         jo.put("time", _time);
@@ -104,6 +290,15 @@ public class Simulator implements JSONable, Observable<EcoSysObserver> {
         return jo;
     }
 
+    @Override
+    public void write_JSON(JSONWriter w) {
+        w.object();
+        w.key("time").value(_time);
+        w.key("state");
+        _manager.write_JSON(w);
+        w.endObject();
+    }
+
     //OBSEVER METHODS
     @Override
     public void addObserver(EcoSysObserver o) {     // add observer to the list
@@ -124,6 +319,14 @@ public class Simulator implements JSONable, Observable<EcoSysObserver> {
         }
     }
 
+    private void notifyAnimalsAdded(int from) {      // notify all observers that the animals from that one on were added
+        if (from == _animals.size()) return;
+        List<AnimalInfo> added = Collections.unmodifiableList(new ArrayList<>(_animals.subList(from, _animals.size())));
+        for (EcoSysObserver o : _observers) {
+            o.onAnimalsAdded(_time, _manager, Collections.unmodifiableList(_animals), added);
+        }
+    }
+
     private void notifyRegionSet(int row, int col, RegionInfo r) {      // notify all observers that a region was set
         for (EcoSysObserver o : _observers) {
             o.onRegionSet(row, col, _manager, r);
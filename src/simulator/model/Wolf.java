@@ -1,6 +1,5 @@
 package simulator.model;
 
-import simulator.misc.Utils;
 import simulator.misc.Vector2D;
 
 import java.security.PrivateKey;
@@ -10,36 +9,48 @@ public class Wolf extends Animal {
     SelectionStrategy _hunting_strategy;
 
     // CONSTANTS FOR WOLF
-    private final double max_age = 14.0;                // Maximum age of the wolf
-    private final double HUNGER_ENERGY = 50.0;        // Energy level at which the wolf starts to hunt
+    public static final double MAX_AGE = 14.0;          // Default maximum age of the wolf
+    public static final double HUNGER = 50.0;           // Default energy level at which the wolf starts to hunt
+    final double max_age;                               // Maximum age of the wolf
+    final double HUNGER_ENERGY;                         // Energy level at which the wolf starts to hunt, also the energy of a prey
     private final double energy_multiplier = 18.0;            // Multiplier for energy
     private final double desire_multiplier = 30.0;            // Multiplier for desire
 
     public Wolf(SelectionStrategy mate_strategy, SelectionStrategy hunting_strategy, Vector2D pos) {
-        super("Wolf", Diet.CARNIVORE, 50.0, 60.0, mate_strategy, pos);
+        this(mate_strategy, hunting_strategy, pos, MAX_AGE, HUNGER, INTERACTION_DISTANCE);
+    }
+
+    public Wolf(SelectionStrategy mate_strategy, SelectionStrategy hunting_strategy, Vector2D pos, double max_age, double hunger_energy, double interaction_distance) {
+        super("Wolf", Diet.CARNIVORE, 50.0, 60.0, interaction_distance, mate_strategy, pos);
+        if (max_age <= 0 || hunger_energy < 0 || hunger_energy > MAX_ENERGY)
+            throw new IllegalArgumentException("Invalid maximum age or hunger energy");
+        this.max_age = max_age;
+        HUNGER_ENERGY = hunger_energy;
         _hunting_strategy = hunting_strategy;
     }
 
     protected Wolf(Wolf p1, Animal p2) {
         super(p1, p2);
+        max_age = p1.max_age;
+        HUNGER_ENERGY = p1.HUNGER_ENERGY;
         _hunting_strategy = p1._hunting_strategy;
         _hunt_target = null;
     }
 
     // STATE MANAGEMENT
     private void switch_to_normal() {
-        _state = State.NORMAL;
+        set_state(State.NORMAL);
         _hunt_target = null;
         _mate_target = null;
     }
 
     private void switch_to_mate() {
-        _state = State.MATE;
+        set_state(State.MATE);
         _hunt_target = null;
     }
 
     private void switch_to_hunger() {
-        _state = State.HUNGER;
+        set_state(State.HUNGER);
         _mate_target = null;
     }
 
@@ -76,7 +87,7 @@ public class Wolf extends Animal {
 
     private void update_hunger(double dt) {
         // Step 1: check hunt target
-        if (_hunt_target == null || (_hunt_target.get_state() == State.DEAD || _hunt_target.get_position().distanceTo(get_position()) > _sight_range)) {
+        if (_hunt_target == null || (state_of(_hunt_target) == State.DEAD || position_of(_hunt_target).distanceSqTo(_pos) > _sight_range * _sight_range)) {
             _hunt_target = search_new_hunt_target();
         }
 
@@ -84,17 +95,13 @@ public class Wolf extends Animal {
         if (_hunt_target == null) {
             move_randomly(dt, _speed, energy_multiplier, desire_multiplier);
         } else {
-            _dest = _hunt_target.get_position();
+            head_to(position_of(_hunt_target));
 
             move_and_clamp(dt, 3.0 * _speed, energy_multiplier * 1.2, desire_multiplier);
 
-            if (_pos.distanceTo(_hunt_target.get_position()) < INTERACTION_DISTANCE) {
-                _hunt_target._state = State.DEAD;
+            if (_pos.distanceSqTo(position_of(_hunt_target)) < _interaction_distance * _interaction_distance) {
+                kill(_hunt_target);     // the energy comes in on_kill, if no other animal got the prey first
                 _hunt_target = null;
-                _energy += HUNGER_ENERGY;
-                if (_energy > MAX_ENERGY) {
-                    _energy = MAX_ENERGY;
-                }
             }
         }
 
@@ -110,7 +117,7 @@ public class Wolf extends Animal {
 
     private void update_mate(double dt) {
         // Step 1: check mate target
-        if (_mate_target != null && (_mate_target.get_state() == State.DEAD || _pos.distanceTo(_mate_target._pos) > _sight_range)) {
+        if (_mate_target != null && (state_of(_mate_target) == State.DEAD || _pos.distanceSqTo(position_of(_mate_target)) > _sight_range * _sight_range)) {
             _mate_target = null;
         }
 
@@ -122,17 +129,17 @@ public class Wolf extends Animal {
         if (_mate_target == null) {
             move_randomly(dt, _speed, energy_multiplier, desire_multiplier);
         } else {
-            _dest = _mate_target.get_position();
+            head_to(position_of(_mate_target));
 
             move_and_clamp(dt, 3.0 * _speed, energy_multiplier * 1.2, desire_multiplier);
 
-            if (_pos.distanceTo(_mate_target.get_position()) < INTERACTION_DISTANCE) {
-                _mate_target._desire = 0.0;
+            if (_pos.distanceSqTo(position_of(_mate_target)) < _interaction_distance * _interaction_distance) {
                 _desire = 0.0;
-
-                if (_baby == null && Utils._rand.nextDouble() < BIRTH_PROBABILITY) {
-                    _mate_target._baby = new Wolf(this, _mate_target);
+                Animal baby = null;
+                if (_baby == null && _rand.nextDouble() < BIRTH_PROBABILITY) {
+                    baby = new Wolf(this, _mate_target);
                 }
+                mate_with(_mate_target, baby);      // granted in act, the attempt costs desire and energy anyway
 
                 _energy -= 10.0;
                 if (_energy < 0.0) {
@@ -152,6 +159,19 @@ public class Wolf extends Animal {
         }
     }
 
+    @Override
+    protected void on_kill(Animal prey) {
+        _energy += HUNGER_ENERGY;
+        if (_energy > MAX_ENERGY) {
+            _energy = MAX_ENERGY;
+        }
+    }
+
+    @Override
+    protected void on_mate(Animal partner, Animal baby) {
+        if (baby != null) partner._baby = baby;      // the partner carries the baby
+    }
+
     @Override
     public void update(double dt) {
         if (_state == State.DEAD) {
@@ -161,26 +181,16 @@ public class Wolf extends Animal {
         update_according_to_state(dt);
 
         if (!pos_in_bounds()) {            // Check if the animal is out of bounds and clamp it
-            _pos = clamp_pos();
+            clamp_pos();
             switch_to_normal();            // If the animal is out of bounds, it will be set to normal state
         }
 
         if (_energy == 0.0 || _age > max_age) {
-            _state = State.DEAD;
-        }
-
-        if (_state != State.DEAD) {
-            _energy += _region_mngr.get_food(this, dt);
-            if (_energy > MAX_ENERGY) {
-                _energy = MAX_ENERGY;
-            }
-            if (_energy < 0.0) {
-                _energy = 0.0;
-            }
+            set_state(State.DEAD);
         }
     }
 
     private Animal search_new_hunt_target() {
-        return _hunting_strategy.select(this, _region_mngr.get_animals_in_range(this, a -> a.get_diet() == Diet.HERBIVORE));
+        return _region_mngr.select_in_range(this, Diet.HERBIVORE, _hunting_strategy);
     }
 }
@@ -10,6 +10,9 @@ import org.json.JSONTokener;
 import resources.examples.Examples;
 import resources.icons.Icons;
 import simulator.control.Controller;
+import simulator.control.SnapshotRecorder;
+import simulator.control.SnapshotWriter;
+import simulator.control.TrajectoryWriter;
 import simulator.launcher.Main;
 
 class ControlPanel extends JPanel {
@@ -24,10 +27,13 @@ class ControlPanel extends JPanel {
     private JButton _viewerButton;
     private JButton _runButton;
     private JButton _stopButton;
+    private JToggleButton _recordButton;
+    private SnapshotRecorder _recorder = null;     // while the record button is selected
 
     private JSpinner _stepsSpinner;
     private JTextField _deltaTimeField;
     private int _steps = 10000;
+    private static final int RECORD_QUEUE = 8;
 
     public ControlPanel(Controller ctrl) {
         _ctrl = ctrl;
@@ -87,6 +93,12 @@ class ControlPanel extends JPanel {
         _stopButton.addActionListener((e) -> stop_sim());
         _toolaBar.add(_stopButton);
 
+        // Record Button
+        _recordButton = new JToggleButton("Rec");
+        _recordButton.setToolTipText("Record the following steps in a binary trajectory file (.traj)");
+        _recordButton.addActionListener((e) -> record(_recordButton.isSelected()));
+        _toolaBar.add(_recordButton);
+
         // JSpinner Steps
         _stepsSpinner = new JSpinner(new SpinnerNumberModel(_steps, 1000, 60000, 100));
         _stepsSpinner.setToolTipText("Simulation steps between each update");
@@ -139,6 +151,34 @@ class ControlPanel extends JPanel {
         }
     }
 
+    private void record(boolean start) {     // start or stop recording every step of the simulation
+        if (start) {
+            int returnVal = _fc.showSaveDialog(ViewUtils.getWindow(this));
+            if (returnVal != JFileChooser.APPROVE_OPTION) {
+                _recordButton.setSelected(false);
+                return;
+            }
+            try {
+                SnapshotWriter w = new TrajectoryWriter(_fc.getSelectedFile().toPath(), _ctrl.get_map_info(), RECORD_QUEUE);
+                _recorder = new SnapshotRecorder(w, 1);
+                _ctrl.addObserver(_recorder);
+                _openButton.setEnabled(false);     // the map of the trajectory cannot change
+            } catch (Exception ex) {
+                _recordButton.setSelected(false);
+                ViewUtils.showErrorMsg(this, "Unable to create the trajectory file");
+            }
+        } else if (_recorder != null) {
+            _ctrl.removeObserver(_recorder);
+            try {
+                _recorder.close();
+            } catch (Exception ex) {
+                ViewUtils.showErrorMsg(this, ex.getMessage());
+            }
+            _recorder = null;
+            _openButton.setEnabled(_stopped);
+        }
+    }
+
     private void mapWindow() {   // Open the map window
         MapWindow map = new MapWindow(ViewUtils.getWindow(this), _ctrl);
         map.setVisible(true);
@@ -169,7 +209,7 @@ class ControlPanel extends JPanel {
             }
         } catch (Exception e) {
             ViewUtils.showErrorMsg(this, "Invalid input for steps or delta-time");
-            _openButton.setEnabled(true);
+            _openButton.setEnabled(_recorder == null);
             _viewerButton.setEnabled(true);
             _regionsButton.setEnabled(true);
             _runButton.setEnabled(true);
@@ -189,7 +229,7 @@ class ControlPanel extends JPanel {
                 SwingUtilities.invokeLater(() -> run_sim(n - 1, dt));   // Run the simulation for n-1 steps recursively
             } catch (Exception e) {
                 ViewUtils.showErrorMsg(this, e.getMessage());
-                _openButton.setEnabled(true);
+                _openButton.setEnabled(_recorder == null);
                 _viewerButton.setEnabled(true);
                 _regionsButton.setEnabled(true);
                 _runButton.setEnabled(true);
@@ -197,7 +237,7 @@ class ControlPanel extends JPanel {
                 _stopped = true;
             }
         } else {
-            _openButton.setEnabled(true);
+            _openButton.setEnabled(_recorder == null);
             _viewerButton.setEnabled(true);
             _regionsButton.setEnabled(true);
             _runButton.setEnabled(true);
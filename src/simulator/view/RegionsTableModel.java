@@ -103,10 +103,7 @@ class RegionsTableModel extends AbstractTableModel implements EcoSysObserver {
     private void update_diets(RegionInfo r) {   // Update the number of animals for each diet inside the specified region
         Map<Diet, Integer> aux = new HashMap<>();
         for (Diet d : Diet.values()) {
-            aux.put(d, 0);       // Initialize the number of animals of each diet to 0
-        }
-        for (AnimalInfo a : r.getAnimalsInfo()) {   // For each animal in the region
-            aux.put(a.get_diet(), aux.get(a.get_diet()) + 1);    // Update the number of animals of each diet
+            aux.put(d, r.get_num_animals(d));       // The region keeps the counters, no need to walk its animals
         }
         _regionDiet.put(r, aux);     // Update the region and its diets
     }
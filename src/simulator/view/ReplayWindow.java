@@ -0,0 +1,94 @@
+package simulator.view;
+
+import java.awt.BorderLayout;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.swing.*;
+
+import simulator.control.TrajectoryReader;
+
+public class ReplayWindow extends JFrame {
+    private static final long serialVersionUID = 1L;
+
+    private final TrajectoryReader _reader;
+    private AbstractMapViewer _viewer;
+    private JSlider _slider;
+    private JButton _playButton;
+    private Timer _timer;
+    private static final int FRAME_DELAY = 40;     // milliseconds between two states while playing
+
+    public ReplayWindow(TrajectoryReader reader) {
+        super("[REPLAY]");
+        _reader = reader;
+        initGUI();
+    }
+
+    private void initGUI() {
+        JPanel mainPanel = new JPanel(new BorderLayout());
+        setContentPane(mainPanel);
+
+        _viewer = new MapViewer();
+        mainPanel.add(_viewer, BorderLayout.CENTER);
+
+        // Slider to go to any state, and play/stop
+        JToolBar toolBar = new JToolBar();
+        _playButton = new JButton("Play");
+        _playButton.addActionListener((e) -> play_or_stop());
+        toolBar.add(_playButton);
+        _slider = new JSlider(0, Math.max(0, _reader.get_num_ticks() - 1), 0);
+        _slider.addChangeListener((e) -> show_tick(_slider.getValue()));
+        toolBar.add(_slider);
+        mainPanel.add(toolBar, BorderLayout.PAGE_END);
+
+        _timer = new Timer(FRAME_DELAY, (e) -> {
+            if (_slider.getValue() < _slider.getMaximum())
+                _slider.setValue(_slider.getValue() + 1);
+            else
+                play_or_stop();
+        });
+
+        _viewer.reset(0.0, _reader.get_map_info(), Collections.emptyList());
+        if (_reader.get_num_ticks() > 0)
+            show_tick(0);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                _timer.stop();
+                try {
+                    _reader.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        });
+
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        pack();
+        setResizable(false);
+        setVisible(true);
+    }
+
+    private void play_or_stop() {
+        if (_timer.isRunning()) {
+            _timer.stop();
+            _playButton.setText("Play");
+        } else {
+            _timer.start();
+            _playButton.setText("Stop");
+        }
+    }
+
+    private void show_tick(int i) {     // the reader finds any state directly, no need to read the ones before
+        try {
+            TrajectoryReader.Tick tick = _reader.get_tick(i);
+            _viewer.update(tick.get_animals(), tick.get_time());
+        } catch (IOException e) {
+            _timer.stop();
+            ViewUtils.showErrorMsg(this, "Unable to read the trajectory file");
+        }
+    }
+}
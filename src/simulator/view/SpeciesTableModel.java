@@ -62,11 +62,25 @@ class SpeciesTableModel extends AbstractTableModel implements EcoSysObserver {
             for (State s : State.values())
                 _species.get(k).put(s, 0);
         }
+        for (AnimalInfo a : animals)    // none, unless a checkpoint was loaded
+            count(a);
         fireTableDataChanged();
     }
 
     @Override
     public void onAnimalAdded(double time, MapInfo map, List<AnimalInfo> animals, AnimalInfo a) {
+        count(a);
+        fireTableDataChanged();     // Update the table
+    }
+
+    @Override
+    public void onAnimalsAdded(double time, MapInfo map, List<AnimalInfo> animals, List<AnimalInfo> added) {
+        for (AnimalInfo a : added)
+            count(a);
+        fireTableDataChanged();     // a single refresh for all of them
+    }
+
+    private void count(AnimalInfo a) {
         if (!_species.containsKey(a.get_genetic_code())) {  // If the species is not in the map, add it
             SortedMap data = new TreeMap<State, Integer>();
             for (State s : State.values())
@@ -75,7 +89,6 @@ class SpeciesTableModel extends AbstractTableModel implements EcoSysObserver {
         }
         SortedMap<State, Integer> data = _species.get(a.get_genetic_code());    // Get the species from the map
         data.put(a.get_state(), data.get(a.get_state()) + 1);   // Increase the number of animals in the specific state
-        fireTableDataChanged();     // Update the table
     }
 
     @Override
@@ -90,7 +103,7 @@ class SpeciesTableModel extends AbstractTableModel implements EcoSysObserver {
                     _species.get(k).put(s, 0);  // Reset the number of animals in each state to 0
         }
         for (AnimalInfo a : animals) {  // For each animal
-            onAnimalAdded(time, map, animals, a);   // Update the number of animals in each state
+            count(a);   // Update the number of animals in each state
         }
         fireTableDataChanged();     // Update the table
     }
@@ -87,6 +87,14 @@ class StatusBar extends JPanel implements EcoSysObserver {
         updateLabels();
     }
 
+    @Override
+    public void onAnimalsAdded(double time, MapInfo map, List<AnimalInfo> animals, List<AnimalInfo> added) {
+        // Same, with the labels updated once
+        _time = time;
+        _numAnimals = animals.size();
+        updateLabels();
+    }
+
     @Override
     public void onRegionSet(int row, int col, MapInfo map, RegionInfo r) {
         // Updates the rows, columns, height and width
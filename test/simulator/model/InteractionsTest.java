@@ -0,0 +1,73 @@
+package simulator.model;
+
+import simulator.misc.Vector2D;
+
+// Checks the claims of Interactions. Run with the classes of src and lib on the class path:
+//   java -ea -cp <classes>:lib/* simulator.model.InteractionsTest
+public class InteractionsTest {
+
+    public static void main(String[] args) {
+        mated_sheep_can_be_hunted();
+        killed_once_and_mated_once_per_step();
+        dead_initiator_cannot_mate();
+        claims_expire_with_the_step();
+        System.out.println("InteractionsTest passed");
+    }
+
+    private static void mated_sheep_can_be_hunted() {
+        Interactions interactions = new Interactions();
+        Sheep sheep = sheep();
+        Sheep partner = sheep();
+        interactions.next_step();
+
+        check(interactions.claim(sheep, partner), "the mating is granted");
+        check(interactions.claim(sheep), "a sheep that just mated can still be killed");
+    }
+
+    private static void killed_once_and_mated_once_per_step() {
+        Interactions interactions = new Interactions();
+        Sheep a = sheep();
+        Sheep b = sheep();
+        Sheep c = sheep();
+        interactions.next_step();
+
+        check(interactions.claim(a, b), "the first mating is granted");
+        check(!interactions.claim(c, b), "a partner takes part in one mating per step");
+        check(!interactions.claim(b, c), "not as the initiator either");
+        check(interactions.claim(c), "the first kill is granted");
+        check(!interactions.claim(c), "an animal is killed once per step");
+        check(!interactions.claim(a, a), "an animal does not mate with itself");
+    }
+
+    private static void dead_initiator_cannot_mate() {
+        Interactions interactions = new Interactions();
+        Sheep sheep = sheep();
+        Sheep partner = sheep();
+        interactions.next_step();
+
+        check(interactions.claim(sheep), "the kill is granted");
+        sheep.set_state(State.DEAD);        // as Animal.act does after a granted kill
+        check(!interactions.claim(sheep, partner), "a sheep killed earlier in the step does not mate");
+        check(!interactions.claim(partner, sheep), "nor is it taken as a partner");
+        check(interactions.claim(partner, sheep()), "the partner is still free");
+    }
+
+    private static void claims_expire_with_the_step() {
+        Interactions interactions = new Interactions();
+        Sheep a = sheep();
+        Sheep b = sheep();
+        interactions.next_step();
+        check(interactions.claim(a, b), "the mating is granted");
+
+        interactions.next_step();
+        check(interactions.claim(a, b), "the claims of the previous step are dropped");
+    }
+
+    private static Sheep sheep() {
+        return new Sheep(new SelectFirst(), new SelectFirst(), new Vector2D(0.0, 0.0));
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) throw new AssertionError(what);
+    }
+}